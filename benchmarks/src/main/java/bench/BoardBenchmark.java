@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Move generation and board flipping, one operation is a single move or flip
+// The generator parameter selects the table driven move generator or the computed moves it replaced.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({"table", "computed"})
+    public String generator;
+
+    private long[] positions;
+
+    @Setup
+    public void setup(){
+        positions = Corpus.positions();
+        Engine.use_move_tables(generator.equals("table"));
+    }
+
+    // Generates the move of every piece of both sides on every board
+    @Benchmark
+    @OperationsPerInvocation(Corpus.PIECES)
+    public long generate_move(){
+        long sum = 0;
+        for(long pos : positions){
+            for(int pieces = Engine.white_pieces(pos); pieces != 0; pieces &= pieces - 1){
+                sum += Engine.generate_move(pos, Integer.numberOfTrailingZeros(pieces), true);
+            }
+            for(int pieces = Engine.black_pieces(pos); pieces != 0; pieces &= pieces - 1){
+                sum += Engine.generate_move(pos, Integer.numberOfTrailingZeros(pieces), false);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpus.SIZE)
+    public long flip_position(){
+        long sum = 0;
+        for(long pos : positions){
+            sum += Engine.flip_position(pos);
+        }
+        return sum;
+    }
+}
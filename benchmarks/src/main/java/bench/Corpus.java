@@ -0,0 +1,32 @@
+package bench;
+
+// Fixed set of positions shared by every benchmark, from the opening to late positions with kings close to the exit
+// Every board holds four pieces of each side, the per operation counts below depend on it.
+final class Corpus {
+    // Number of boards and of pieces over all boards
+    static final int SIZE = 8;
+    static final int PIECES = 64;
+
+    static final String[] BOARDS = {
+        "WwwwxxxxxxxxbbbB",
+        "xwwwWxxxxxxxbbbB",
+        "xxwwWwxxxxxxbbbB",
+        "wwxWxwxxxbxxbBxb",
+        "xwxwWxwxxbxbBxbx",
+        "wxwxxWxwbxBxbxbx",
+        "xxxwwwxWxBbbxxxx",
+        "wwwxxxxWBxxxxbbb"
+    };
+
+    private Corpus(){
+    }
+
+    // Returns the corpus packed into boards
+    static long[] positions(){
+        long[] positions = new long[BOARDS.length];
+        for(int i = 0; i < BOARDS.length; i++){
+            positions[i] = Engine.from_string(BOARDS[i]);
+        }
+        return positions;
+    }
+}
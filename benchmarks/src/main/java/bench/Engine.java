@@ -0,0 +1,238 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+// Handles to the engine, whose classes live in the default package and cannot be named from a package
+// The handles are constants, so the JIT inlines them like direct calls. Engine types are erased to Object.
+final class Engine {
+    private static final MethodHandle FROM_STRING = method("Board", "from_string", String.class);
+    private static final MethodHandle GENERATE_MOVE = method("Board", "generate_move", long.class, int.class, boolean.class);
+    private static final MethodHandle USE_MOVE_TABLES = method("Board", "use_move_tables", boolean.class);
+    private static final MethodHandle WHITE_PIECES = method("Board", "white_pieces", long.class);
+    private static final MethodHandle BLACK_PIECES = method("Board", "black_pieces", long.class);
+    private static final MethodHandle FLIP_POSITION = method("Board", "flip_position", long.class);
+    private static final MethodHandle ESTIMATE_POSITION = method("Board", "estimate_position", long.class);
+    private static final MethodHandle ESTIMATE_POSITION_IMPROVED =
+            method("MiniMaxImproved$GameCalculations", "estimate_position", long.class).bindTo(create("MiniMaxImproved$GameCalculations"));
+
+    private static final MethodHandle NEW_STATS = constructor("SearchStats");
+    private static final MethodHandle POSITIONS_EVALUATED = method("SearchStats", "getPositionsEvaluated");
+
+    private static final MethodHandle MINIMAX = method("MiniMax", "evaluate_moves_first",
+            type("MiniMax$GameCalculations"), long.class, type("SearchStats"), int.class).bindTo(create("MiniMax$GameCalculations"));
+    private static final MethodHandle ALPHABETA = method("AlphaBeta", "evaluate_moves_first",
+            type("AlphaBeta$GameCalculations"), long.class, type("SearchStats"), type("AlphaBeta$SearchContext"),
+            int.class, int.class, int.class, int.class).bindTo(create("AlphaBeta$GameCalculations"));
+    private static final MethodHandle NEW_SEARCH_CONTEXT = constructor("AlphaBeta$SearchContext");
+    private static final MethodHandle SET_TT = setter("AlphaBeta$SearchContext", "tt");
+    private static final MethodHandle GET_TT = getter("AlphaBeta$SearchContext", "tt");
+    private static final MethodHandle SET_ORDERING = setter("AlphaBeta$SearchContext", "ordering");
+    private static final MethodHandle NEW_ORDERING = constructor("MoveOrdering", boolean.class, boolean.class, boolean.class);
+    private static final MethodHandle NEW_TT = constructor("TranspositionTable", int.class);
+    private static final MethodHandle TT_NEW_SEARCH = method("TranspositionTable", "new_search");
+
+    private Engine(){
+    }
+
+    static long from_string(String board){
+        try{
+            return (long) FROM_STRING.invokeExact((Object) board);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static long generate_move(long board, int i, boolean white){
+        try{
+            return (long) GENERATE_MOVE.invokeExact(board, i, white);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static void use_move_tables(boolean enabled){
+        try{
+            USE_MOVE_TABLES.invokeExact(enabled);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static int white_pieces(long board){
+        try{
+            return (int) WHITE_PIECES.invokeExact(board);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static int black_pieces(long board){
+        try{
+            return (int) BLACK_PIECES.invokeExact(board);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static long flip_position(long board){
+        try{
+            return (long) FLIP_POSITION.invokeExact(board);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static int estimate_position(long board){
+        try{
+            return (int) ESTIMATE_POSITION.invokeExact(board);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static int estimate_position_improved(long board){
+        try{
+            return (int) ESTIMATE_POSITION_IMPROVED.invokeExact(board);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static Object new_stats(){
+        try{
+            return (Object) NEW_STATS.invokeExact();
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static long positions_evaluated(Object stats){
+        try{
+            return (long) POSITIONS_EVALUATED.invokeExact(stats);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    // Runs MiniMax.evaluate_moves_first and returns the Move it found
+    static Object minimax(long board, Object stats, int depth){
+        try{
+            return (Object) MINIMAX.invokeExact(board, stats, depth);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    // Returns a new AlphaBeta search context with its own transposition table, no table if megabytes is 0
+    static Object new_search_context(int ttMegabytes){
+        try{
+            Object search = (Object) NEW_SEARCH_CONTEXT.invokeExact();
+            if(ttMegabytes > 0){
+                SET_TT.invokeExact(search, (Object) NEW_TT.invokeExact(ttMegabytes));
+            }
+            return search;
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    // Prepares a search context for a new search like a separate command line run, the transposition table starts a
+    // new generation so earlier searches are not reused and the move ordering heuristics start empty
+    static void new_search(Object search){
+        try{
+            SET_ORDERING.invokeExact(search, (Object) NEW_ORDERING.invokeExact(true, true, true));
+            Object tt = (Object) GET_TT.invokeExact(search);
+            if(tt != null){
+                TT_NEW_SEARCH.invokeExact(tt);
+            }
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    // Runs a fixed depth AlphaBeta.evaluate_moves_first and returns the ABMove it found
+    static Object alphabeta(long board, Object stats, Object search, int depth){
+        try{
+            return (Object) ALPHABETA.invokeExact(board, stats, search, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+        } catch(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static Class<?> type(String name){
+        try{
+            return Class.forName(name);
+        } catch(ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object create(String className){
+        try{
+            Constructor<?> c = type(className).getDeclaredConstructor();
+            c.setAccessible(true);
+            return c.newInstance();
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle method(String className, String name, Class<?>... parameterTypes){
+        try{
+            Method m = type(className).getDeclaredMethod(name, parameterTypes);
+            m.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflect(m));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameterTypes){
+        try{
+            Constructor<?> c = type(className).getDeclaredConstructor(parameterTypes);
+            c.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflectConstructor(c));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle setter(String className, String name){
+        try{
+            Field f = type(className).getDeclaredField(name);
+            f.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflectSetter(f));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle getter(String className, String name){
+        try{
+            Field f = type(className).getDeclaredField(name);
+            f.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflectGetter(f));
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Replaces every reference type in the handle's type by Object so callers do not need the engine classes
+    private static MethodHandle erase(MethodHandle handle){
+        MethodType type = handle.type();
+        for(int i = 0; i < type.parameterCount(); i++){
+            if(!type.parameterType(i).isPrimitive()){
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if(!type.returnType().isPrimitive()){
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+}
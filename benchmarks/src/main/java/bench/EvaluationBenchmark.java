@@ -0,0 +1,66 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Static estimators, one operation is a single estimate
+// The boards are the corpus and every position one move away from it, so both estimators see a mix of positions.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+    // Corpus boards followed by the result of every move on them
+    private static final int POSITIONS = Corpus.SIZE + Corpus.PIECES;
+
+    private long[] positions;
+
+    @Setup
+    public void setup(){
+        positions = new long[POSITIONS];
+        int n = 0;
+        for(long pos : Corpus.positions()){
+            positions[n++] = pos;
+            for(int pieces = Engine.white_pieces(pos); pieces != 0; pieces &= pieces - 1){
+                positions[n++] = Engine.generate_move(pos, Integer.numberOfTrailingZeros(pieces), true);
+            }
+            for(int pieces = Engine.black_pieces(pos); pieces != 0; pieces &= pieces - 1){
+                positions[n++] = Engine.generate_move(pos, Integer.numberOfTrailingZeros(pieces), false);
+            }
+        }
+    }
+
+    // Board.estimate_position, used by MiniMax, MiniMaxBlack and AlphaBeta
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public int estimate_position(){
+        int sum = 0;
+        for(long pos : positions){
+            sum += Engine.estimate_position(pos);
+        }
+        return sum;
+    }
+
+    // MiniMaxImproved's estimate with pawn scores
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public int estimate_position_improved(){
+        int sum = 0;
+        for(long pos : positions){
+            sum += Engine.estimate_position_improved(pos);
+        }
+        return sum;
+    }
+}
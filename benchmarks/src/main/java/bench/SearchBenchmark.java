@@ -0,0 +1,78 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Full searches of the whole corpus, one operation searches every board once
+// The nodes counter is the number of positions evaluated by static estimation and is reported per second. Run with
+// -bm avgt -tu ns for the time of one operation instead, the nodes counter then reads as nanoseconds per node.
+// AlphaBeta runs with its command line defaults, a 16 MB transposition table and all move ordering heuristics,
+// and starts a new table generation for every board like a separate run would.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"minimax", "alphabeta"})
+    public String engine;
+
+    @Param({"4", "6", "8", "10"})
+    public int depth;
+
+    private long[] positions;
+
+    @Setup
+    public void setup(){
+        positions = Corpus.positions();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes{
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            nodes = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Search{
+        Object context;
+
+        @Setup(Level.Trial)
+        public void setup(){
+            context = Engine.new_search_context(16);
+        }
+    }
+
+    @Benchmark
+    public void search(Search search, Nodes nodes, Blackhole bh){
+        for(long pos : positions){
+            Object stats = Engine.new_stats();
+            if(engine.equals("minimax")){
+                bh.consume(Engine.minimax(pos, stats, depth));
+            } else {
+                Engine.new_search(search.context);
+                bh.consume(Engine.alphabeta(pos, stats, search.context, depth));
+            }
+            nodes.nodes += Engine.positions_evaluated(stats);
+        }
+    }
+}
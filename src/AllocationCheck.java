@@ -0,0 +1,230 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Scanner;
+
+// Check that the serial searches allocate nothing on the heap once they are warmed up
+// Every engine searches the board a few times to warm up the JIT and size its per ply buffers, then the tree below
+// each root move is searched again through the recursive evaluate_moves of the engine while the allocation counter of
+// the thread is read before and after. Every such search must allocate 0 bytes. A search that allocates is run again
+// and only fails if it allocates again: the JIT may still recompile or deoptimize a method well after the warm up,
+// which allocates once, while an allocation in the search itself shows up every time. The root search itself builds
+// the returned move, the record of the iteration and a copy of the principal variation, a few objects per search
+// however deep it goes, and the bytes it allocates are printed for information only.
+public class AllocationCheck {
+    private static final String USAGE = "Usage: java AllocationCheck <input_file> <depth> [--searches <count>] [--tablebase <tablebase_file>]";
+
+    private static final int WARM_UP = 20;
+
+    public static void main(String[] args) {
+        if(args.length < 2){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the depth
+        int searches = 5;
+        String tablebaseFile = null;
+        for(int a = 2; a < args.length; a++){
+            if(args[a].equals("--searches") && a + 1 < args.length){
+                searches = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--tablebase") && a + 1 < args.length){
+                tablebaseFile = args[++a];
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        // Read position info from the input file and pack the board into a long
+        File input = new File(args[0]);
+        long position;
+
+        try{
+            // If input file exists, read the file
+            Scanner inputReader = new Scanner(input);
+            position = Board.from_string(inputReader.nextLine());
+            inputReader.close();
+        } catch(FileNotFoundException e) {
+            // If input file doesn't exist, return an error message and exit
+            System.err.println("Error: File does not exist");
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threads = allocation_counter();
+        if(threads == null){
+            System.err.println("Error: This JVM does not count the bytes allocated by a thread");
+            return;
+        }
+
+        Tablebase tablebase = null;
+        if(tablebaseFile != null){
+            try{
+                tablebase = Tablebase.open(tablebaseFile);
+            } catch(IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                return;
+            }
+        }
+
+        int depth = Integer.parseInt(args[1]);
+        int failures = 0;
+        failures += check(threads, "minimax", searches, minimax(position, depth, true, tablebase));
+        failures += check(threads, "minimax-black", searches, minimax(position, depth, false, tablebase));
+        failures += check(threads, "minimax-improved", searches, minimax_improved(position, depth));
+        failures += check(threads, "alphabeta", searches, alphabeta(position, depth, tablebase, 16, false, false));
+        failures += check(threads, "alphabeta --pvs", searches, alphabeta(position, depth, tablebase, 16, true, false));
+        failures += check(threads, "alphabeta --tt-mb 0", searches, alphabeta(position, depth, tablebase, 0, false, false));
+        failures += check(threads, "alphabeta --quiescence --lmr --futility --extensions", searches, alphabeta(position, depth, tablebase, 16, true, true));
+
+        System.out.println("Failures: " + failures);
+        if(failures > 0){
+            System.exit(1);
+        }
+    }
+
+    // Runs the searches of one engine after warming them up, returns the number of tree searches that allocated
+    private static int check(com.sun.management.ThreadMXBean threads, String engine, int searches, Engine search){
+        for(int s = 0; s < WARM_UP; s++){
+            search.root();
+            search.tree();
+        }
+
+        long rootBytes = 0;
+        long treeBytes = 0;
+        int failures = 0;
+        int retried = 0;
+        for(int s = 0; s < searches; s++){
+            long before = threads.getCurrentThreadAllocatedBytes();
+            search.root();
+            long middle = threads.getCurrentThreadAllocatedBytes();
+            search.tree();
+            long after = threads.getCurrentThreadAllocatedBytes();
+
+            if(after != middle){
+                long again = threads.getCurrentThreadAllocatedBytes();
+                search.tree();
+                if(threads.getCurrentThreadAllocatedBytes() != again){
+                    failures++;
+                } else {
+                    retried++;
+                    after = middle;
+                }
+            }
+            rootBytes += middle - before;
+            treeBytes += after - middle;
+        }
+
+        System.out.println(engine + ": " + (treeBytes / searches) + " bytes per tree search, "
+                + (rootBytes / searches) + " bytes per root search" + (retried > 0 ? ", " + retried + " passed on a second run" : "")
+                + (failures > 0 ? " FAILED" : ""));
+        return failures;
+    }
+
+    // A search run twice per round, once from the root and once below every root move
+    interface Engine{
+        void root();
+        void tree();
+    }
+
+    private static Engine minimax(long pos, int depth, boolean white, Tablebase tablebase){
+        MiniMax.GameCalculations game = new MiniMax.GameCalculations();
+        game.tablebase = tablebase;
+        SearchStats stats = new SearchStats();
+        long[] children = children(pos, white);
+
+        return new Engine(){
+            public void root(){
+                MiniMax.evaluate_moves_first(game, pos, stats, depth, white);
+            }
+
+            public void tree(){
+                for(long child : children){
+                    MiniMax.evaluate_moves(game, child, stats, depth - 1, 1, !white);
+                }
+            }
+        };
+    }
+
+    private static Engine minimax_improved(long pos, int depth){
+        MiniMaxImproved.GameCalculations game = new MiniMaxImproved.GameCalculations();
+        SearchStats stats = new SearchStats();
+        long[] children = children(pos, true);
+        int[] pawns = new int[children.length];
+        for(int c = 0; c < children.length; c++){
+            pawns[c] = game.update_pawn_score(pos, children[c], game.pawn_score(pos));
+        }
+
+        return new Engine(){
+            public void root(){
+                MiniMaxImproved.evaluate_moves_first(game, pos, stats, depth);
+            }
+
+            public void tree(){
+                for(int c = 0; c < children.length; c++){
+                    MiniMaxImproved.evaluate_moves(game, children[c], pawns[c], stats, depth - 1, 1, false);
+                }
+            }
+        };
+    }
+
+    // selective turns on the quiescence search and every selective search option, whose buffers are sized by prepare too
+    private static Engine alphabeta(long pos, int depth, Tablebase tablebase, int ttMegabytes, boolean pvs, boolean selective){
+        AlphaBeta.GameCalculations game = new AlphaBeta.GameCalculations();
+        game.tablebase = tablebase;
+        SearchStats stats = new SearchStats();
+        AlphaBeta.SearchContext search = new AlphaBeta.SearchContext();
+        search.tt = ttMegabytes > 0 ? new TranspositionTable(ttMegabytes) : null;
+        search.pvs = pvs;
+        search.quiescence = selective;
+        search.lmr = selective;
+        search.futility = selective;
+        search.extensions = selective;
+        long[] children = children(pos, true);
+
+        return new Engine(){
+            public void root(){
+                AlphaBeta.evaluate_moves_first(game, pos, stats, search, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+            }
+
+            // A new table generation, otherwise the entries of the last round answer the tree search at once
+            public void tree(){
+                if(search.tt != null){
+                    search.tt.new_search();
+                }
+                for(long child : children){
+                    AlphaBeta.evaluate_moves(game, child, stats, search, depth - 1, 1, false, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                }
+            }
+        };
+    }
+
+    // Returns the positions after every move of the side to move, none if the game is already decided
+    private static long[] children(long pos, boolean white){
+        int estimate = Board.estimate_position(pos);
+        if(estimate == 100 || estimate == -100){
+            return new long[0];
+        }
+
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        long[] children = new long[Integer.bitCount(pieces)];
+        for(int c = 0; pieces != 0; pieces &= pieces - 1, c++){
+            children[c] = Board.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white);
+        }
+        return children;
+    }
+
+    // Returns the allocation counters of the JVM, or null if it does not keep them
+    private static com.sun.management.ThreadMXBean allocation_counter(){
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean)){
+            return null;
+        }
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if(!counters.isThreadAllocatedMemorySupported() || !counters.isThreadAllocatedMemoryEnabled()){
+            return null;
+        }
+        return counters;
+    }
+}
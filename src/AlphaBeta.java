@@ -2,29 +2,95 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.FileWriter;
-import java.util.Arrays;
 import java.util.Scanner;
-import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
 
 public class AlphaBeta {
+    private static final String USAGE = "Usage: java AlphaBeta <input_file> <output_file> <depth> [--time-ms <milliseconds>] [--tt-mb <megabytes>] [--ordering <hash,killers,history|none>] [--threads <count>] [--lazy-smp] [--pv] [--pvs] [--quiescence] [--lmr] [--futility] [--extensions] [--aspiration <width>] [--compare] [--tablebase <tablebase_file>] [--book <book_file>] [--stats-json <file>]";
+
+    // Most noisy moves the quiescence search adds below the depth limit
+    public static final int QUIESCENCE_PLIES = 8;
+    // Late move reductions apply to the moves after the first LMR_MOVES of a node with at least LMR_DEPTH plies left
+    public static final int LMR_MOVES = 2;
+    public static final int LMR_DEPTH = 3;
+    // Most plies king exit extensions add to a line
+    public static final int MAX_EXTENSIONS = 4;
+
     public static void main(String[] args) {
-        if(args.length != 3){
-            System.err.println("Usage: java AlphaBeta <input_file> <output_file> <depth>");
+        if(args.length < 3){
+            System.err.println(USAGE);
             return;
         }
 
-        // Read position info from the input file and save each board position in an array
+        // Read the optional search settings that follow the depth
+        int ttMegabytes = 16;
+        long timeMillis = 0;
+        String ordering = "hash,killers,history";
+        int threads = 1;
+        boolean lazySmp = false;
+        boolean showPv = false;
+        boolean pvs = false;
+        boolean quiescence = false;
+        boolean lmr = false;
+        boolean futility = false;
+        boolean extensions = false;
+        int aspiration = 0;
+        boolean compare = false;
+        String tablebaseFile = null;
+        String bookFile = null;
+        String statsFile = null;
+        for(int a = 3; a < args.length; a++){
+            if(args[a].equals("--tt-mb") && a + 1 < args.length){
+                ttMegabytes = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--time-ms") && a + 1 < args.length){
+                timeMillis = Long.parseLong(args[++a]);
+            } else if(args[a].equals("--ordering") && a + 1 < args.length){
+                ordering = args[++a];
+            } else if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--lazy-smp")){
+                lazySmp = true;
+            } else if(args[a].equals("--pv")){
+                showPv = true;
+            } else if(args[a].equals("--pvs")){
+                pvs = true;
+            } else if(args[a].equals("--quiescence")){
+                quiescence = true;
+            } else if(args[a].equals("--lmr")){
+                lmr = true;
+            } else if(args[a].equals("--futility")){
+                futility = true;
+            } else if(args[a].equals("--extensions")){
+                extensions = true;
+            } else if(args[a].equals("--aspiration") && a + 1 < args.length){
+                aspiration = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--compare")){
+                compare = true;
+            } else if(args[a].equals("--tablebase") && a + 1 < args.length){
+                tablebaseFile = args[++a];
+            } else if(args[a].equals("--book") && a + 1 < args.length){
+                bookFile = args[++a];
+            } else if(args[a].equals("--stats-json") && a + 1 < args.length){
+                statsFile = args[++a];
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+        boolean selective = lmr || futility || extensions;
+        if(threads > 1 && (pvs || quiescence || selective || aspiration > 0 || compare)){
+            System.err.println("Error: --pvs, --quiescence, --lmr, --futility, --extensions, --aspiration and --compare need a single thread");
+            return;
+        }
+
+        // Read position info from the input file and pack the board into a long
         File input = new File(args[0]);
-        String[] position = new String[16];
+        long position;
 
         try{
             // If input file exists, read the file
             Scanner inputReader = new Scanner(input);
-            String temp = inputReader.nextLine();
-
-            for(int i = 0; i < position.length; i++){
-                position[i] = "" + temp.charAt(i);
-            }
+            position = Board.from_string(inputReader.nextLine());
             inputReader.close();
         } catch(FileNotFoundException e) {
             // If input file doesn't exist, return an error message and exit
@@ -32,23 +98,130 @@ public class AlphaBeta {
             return;
         }
 
-        // Lists for storing the possible moves and their corresponding static estimation
-        ArrayList<ABMove> moves = new ArrayList<ABMove>();
+        // Counters for the positions evaluated during the search
+        SearchStats stats = new SearchStats();
         GameCalculations game = new GameCalculations();
+        if(tablebaseFile != null){
+            try{
+                game.tablebase = Tablebase.open(tablebaseFile);
+            } catch(IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                return;
+            }
+        }
+        if(bookFile != null){
+            try{
+                game.book = OpeningBook.open(bookFile);
+            } catch(IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                return;
+            }
+        }
+        SearchContext search = new SearchContext();
+        // Table for positions reached again through a different move order, a budget of 0 disables it
+        search.tt = ttMegabytes > 0 ? new TranspositionTable(ttMegabytes) : null;
+        search.ordering = MoveOrdering.parse(ordering);
+        search.pvs = pvs;
+        search.quiescence = quiescence;
+        search.lmr = lmr;
+        search.futility = futility;
+        search.extensions = extensions;
+        search.aspiration = aspiration;
+
+        SearchReport report = statsFile != null ? new SearchReport("alphabeta", position, Integer.parseInt(args[2]), stats) : null;
 
         // Loop through array of positions and generate all possible moves for White for a given depth
-        ABMove evaluation = evaluate_moves_first(game, position, moves, Integer.parseInt(args[2]), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        // With a time budget the depth is only a cap and the search deepens one ply at a time until the budget runs out
+        ABMove evaluation;
+        // Aspiration windows need the estimate of the previous iteration, so they also turn on iterative deepening
+        // With more than one thread the fixed depth search is split between the threads, searches with a time budget
+        // (or --lazy-smp) run one iterative deepening search per thread that only share the transposition table
+        LazySmp smp = null;
+        if(threads > 1 && (lazySmp || timeMillis > 0)){
+            smp = new LazySmp(threads, game, stats, search.tt, ordering);
+            evaluation = smp.search(position, Integer.parseInt(args[2]), timeMillis);
+            search.completedDepth = smp.completed_depth();
+            search.principalVariation = smp.principal_variation();
+        } else if(threads > 1){
+            ParallelAlphaBeta parallel = new ParallelAlphaBeta(threads, game, stats, search.tt, ordering);
+            evaluation = parallel.evaluate_moves_first(position, Integer.parseInt(args[2]));
+            search.principalVariation = parallel.principal_variation();
+            parallel.shutdown();
+        } else {
+            evaluation = search_serial(game, position, stats, search, Integer.parseInt(args[2]), timeMillis);
+        }
 
         // Output final game statistics
-        String outStr = "";
-        for(int i = 0; i < evaluation.getPosition().length; i++){
-            outStr += evaluation.getPosition()[i];
-        }
+        String outStr = Board.to_string(evaluation.getPosition());
         System.out.print("Board Position: " + outStr);
-        System.out.println("\nPositions evaluated by static estimation: " + moves.size());
+        System.out.println("\nPositions evaluated by static estimation: " + stats.getPositionsEvaluated());
+        if(search.tt != null){
+            TranspositionTable tt = search.tt;
+            System.out.println("Transposition table hits: " + tt.getHits() + " of " + tt.getProbes() + " probes (" + tt.hitRate() + ")");
+        }
+        System.out.println("First-move cutoffs: " + stats.getFirstMoveCutoffs() + " of " + stats.getCutoffs() + " cutoffs (" + stats.firstMoveCutoffRate() + ")");
         System.out.println("ALPHA-BETA estimate: " + evaluation.getEstimate());
+        if(showPv){
+            System.out.println("Principal variation: " + principal_variation(game, position, search.principalVariation));
+        }
+        if(timeMillis > 0 || aspiration > 0 || smp != null){
+            System.out.println("Completed depth: " + search.completedDepth);
+        }
+        if(smp != null){
+            smp.print_thread_nodes();
+        }
+        if(pvs){
+            System.out.println("PVS re-searches: " + stats.getPvsReSearches());
+        }
+        if(quiescence){
+            System.out.println("Quiescence positions: " + stats.getQuiescenceNodes());
+        }
+        if(lmr){
+            System.out.println("Late move reductions: " + stats.getLateMoveReductions() + " (" + stats.getLateMoveReSearches() + " re-searched)");
+        }
+        if(futility){
+            System.out.println("Futility pruned moves: " + stats.getFutilityPrunes());
+        }
+        if(extensions){
+            System.out.println("King exit extensions: " + stats.getExtensions());
+        }
+        if(aspiration > 0){
+            System.out.println("Aspiration re-searches: " + stats.getAspirationReSearches());
+        }
+        if(game.tablebase != null){
+            System.out.println("Tablebase hits: " + stats.getTablebaseHits());
+        }
+        if(game.book != null){
+            System.out.println("Opening book: " + (book_entry(game, position, Integer.parseInt(args[2])) != 0 ? "hit" : "miss"));
+        }
+        if(compare){
+            // Search again without PVS, aspiration windows and selective search to the depth the first search completed
+            // The quiescence search is kept, it changes the estimates being compared
+            SearchStats plainStats = new SearchStats();
+            SearchContext plain = new SearchContext();
+            plain.tt = ttMegabytes > 0 ? new TranspositionTable(ttMegabytes) : null;
+            plain.ordering = MoveOrdering.parse(ordering);
+            plain.quiescence = quiescence;
+            int depth = timeMillis > 0 ? search.completedDepth : Integer.parseInt(args[2]);
+            if(timeMillis > 0 || aspiration > 0){
+                iterative_deepening(game, position, plainStats, plain, depth, 0);
+            } else {
+                evaluate_moves_first(game, position, plainStats, plain, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+            }
 
-        // Write to output file
+            long saved = plainStats.getPositionsEvaluated() - stats.getPositionsEvaluated();
+            System.out.println("Plain alpha-beta positions evaluated: " + plainStats.getPositionsEvaluated() + " (" + saved + " saved, "
+                    + String.format("%.2f%%", plainStats.getPositionsEvaluated() == 0 ? 0.0 : 100.0 * saved / plainStats.getPositionsEvaluated()) + ")");
+        }
+
+        // Write the stats and the output file
+        if(report != null){
+            try{
+                report.write(statsFile, stats, search.tt, evaluation.getPosition(), evaluation.getEstimate());
+            } catch(IOException e) {
+                System.err.println("Error: Failed to write stats file");
+            }
+        }
         try{
             FileWriter outputWriter = new FileWriter(args[1]);
             outputWriter.write(outStr);
@@ -58,19 +231,96 @@ public class AlphaBeta {
         }
     }
 
+    // Single threaded search of the position, iterative deepening if there is a time budget or aspiration windows are used
+    public static ABMove search_serial(GameCalculations game, long pos, SearchStats stats, SearchContext search, int depth, long timeMillis) {
+        if(timeMillis > 0 || search.aspiration > 0){
+            return iterative_deepening(game, pos, stats, search, depth, timeMillis);
+        }
+        return evaluate_moves_first(game, pos, stats, search, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+    }
+
+    // Iterative deepening driver, searches depth 1, 2, 3... until maxDepth is reached or the time budget expires (0 for no budget)
+    // Returns the best move of the last completed iteration, each iteration searches the previous best move first
+    // With aspiration windows every iteration after the first starts with a window of search.aspiration around the
+    // estimate of the previous iteration, and the side of the window that the estimate falls outside of is opened
+    // up for a re-search.
+    public static ABMove iterative_deepening(GameCalculations game, long pos, SearchStats stats, SearchContext search, int maxDepth, long timeMillis) {
+        long deadline = timeMillis > 0 ? System.nanoTime() + timeMillis * 1_000_000L : Long.MAX_VALUE;
+        ABMove best = null;
+        int bestMove = -1;
+
+        for(int depth = Math.min(1, maxDepth); depth <= maxDepth; depth++){
+            // The first iteration always completes so there is a move to return
+            search.deadline = depth == 1 ? Long.MAX_VALUE : deadline;
+            int alpha = Integer.MIN_VALUE;
+            int beta = Integer.MAX_VALUE;
+            if(search.aspiration > 0 && best != null){
+                alpha = best.getEstimate() - search.aspiration;
+                beta = best.getEstimate() + search.aspiration;
+            }
+
+            ABMove evaluation;
+            while(true){
+                search.bestMove = -1;
+                evaluation = evaluate_moves_first(game, pos, stats, search, depth, alpha, beta, bestMove);
+                if(search.aborted || (evaluation.getEstimate() > alpha && evaluation.getEstimate() < beta)){
+                    break;
+                }
+                if(alpha == Integer.MIN_VALUE && beta == Integer.MAX_VALUE){
+                    break;
+                }
+
+                // The estimate is only a bound, search again with that side of the window open
+                stats.aspiration_re_search();
+                if(evaluation.getEstimate() <= alpha){
+                    alpha = Integer.MIN_VALUE;
+                } else {
+                    beta = Integer.MAX_VALUE;
+                }
+            }
+            if(search.aborted){
+                break;
+            }
+
+            best = evaluation;
+            bestMove = search.bestMove;
+            search.completedDepth = depth;
+
+            // Stop early if the game is already decided or the budget is spent
+            if(bestMove == -1 || System.nanoTime() >= deadline){
+                break;
+            }
+        }
+
+        return best;
+    }
+
     // Recursive method for generating all moves at a depth specified in the parameters
     // Uses alpha beta pruning to estimate the static estimates of each position
-    public static ABMove evaluate_moves_first(GameCalculations game, String[] pos, ArrayList<ABMove> moves, int depth, int alpha, int beta) {
-        ArrayList<ABMove> possibleMoves = new ArrayList<ABMove>();
-        int bestVal;
-        int min_max = 0;
-        int index = 0;
+    // firstMove is the index of a White piece to search before the others, or -1 to search in board order
+    // Only the best child position is built here, the search below the root works on scores and piece indices.
+    // The best line of a search that was not aborted is left in search.principalVariation.
+    // Every call is recorded in stats as one iteration.
+    public static ABMove evaluate_moves_first(GameCalculations game, long pos, SearchStats stats, SearchContext search, int depth, int alpha, int beta, int firstMove) {
+        SearchStats.Iteration iteration = stats.begin_iteration("alphabeta", depth);
+        ABMove move = search_root(game, pos, stats, search, depth, alpha, beta, firstMove);
+        stats.end_iteration(iteration, move.getEstimate(), !search.aborted);
+        return move;
+    }
+
+    private static ABMove search_root(GameCalculations game, long pos, SearchStats stats, SearchContext search, int depth, int alpha, int beta, int firstMove) {
         ABMove temp = new ABMove();
+        int bestVal;
+        long bestPos = pos;
+        PrincipalVariation pv = search.pv;
+        search.prepare(depth + 1);
+        pv.clear(0);
 
         if(depth == 0) {
             // Return the position and its estimate if the depth is 0
             temp.setMove(pos, game.estimate_position(pos));
-            moves.add(temp);
+            stats.leaf(0);
+            search.principalVariation = pv.line(0);
             return temp;
         }
 
@@ -78,153 +328,396 @@ public class AlphaBeta {
         int estimate = game.estimate_position(pos);
         if(estimate == 100 || estimate == -100){
             temp.setMove(pos, estimate);
-            moves.add(temp);
+            stats.terminal_win(0);
+            search.principalVariation = pv.line(0);
             return temp;
         }
 
-        bestVal = -1000;
+        // A position the opening book holds at this depth or deeper is answered from the book
+        int book = book_entry(game, pos, depth);
+        if(book != 0){
+            search.bestMove = OpeningBook.move(book);
+            search.principalVariation = new int[]{search.bestMove};
+            temp.setMove(game.generate_move(pos, search.bestMove), OpeningBook.estimate(book));
+            return temp;
+        }
+        stats.interior_node(0);
 
-        for (int i = 0; i < pos.length; i++) {
-            if (pos[i].equals("W") || pos[i].equals("w")) {
-                temp = evaluate_moves(game, game.generate_move(pos, i), moves, depth - 1, false, alpha, beta);
-                possibleMoves.add(temp);
+        bestVal = -1000;
+        // The window is negated for the children, so it must not start at Integer.MIN_VALUE
+        alpha = Math.max(alpha, -Integer.MAX_VALUE);
+
+        int pieces = Board.white_pieces(pos);
+        int first = firstMove >= 0 ? pieces & (1 << firstMove) : 0;
+        int searched = 0;
+        while (pieces != 0) {
+            int i = Integer.numberOfTrailingZeros(first != 0 ? first : pieces);
+            pieces &= ~(1 << i);
+            first = 0;
+
+            long child = game.generate_move(pos, i);
+            int value = search_child(game, child, stats, search, depth - 1, 1, false, alpha, beta, searched++ == 0);
+            if (search.aborted) {
+                break;
+            }
 
-                if (bestVal < temp.getEstimate()) {
-                    bestVal = temp.getEstimate();
-                    min_max = index;
-                }
-                alpha = Math.max(alpha, temp.getEstimate());
-                index++;
+            if (bestVal < value) {
+                bestVal = value;
+                bestPos = child;
+                search.bestMove = i;
+                pv.update(0, i);
+            }
+            alpha = Math.max(alpha, value);
 
-                if(beta <= alpha){
-                    break;
-                }
+            if(beta <= alpha){
+                break;
             }
         }
 
-        return possibleMoves.get(min_max);
+        if(!search.aborted){
+            search.principalVariation = pv.line(0);
+        }
+        temp.setMove(bestPos, bestVal);
+        return temp;
     }
 
-    // Recursive helper method of evaluate_moves_first
-    // Uses alpha beta pruning to estimate the static estimates of each position
-    public static ABMove evaluate_moves(GameCalculations game, String[] pos, ArrayList<ABMove> moves, int depth, boolean max, int alpha, int beta) {
-        int bestVal;
-        int index = 0;
-        int min_max = 0;
-        ABMove temp = new ABMove();
-        ArrayList<ABMove> possibleMoves = new ArrayList<ABMove>();
+    // Recursive helper method of evaluate_moves_first for searching a subtree from White's point of view
+    // max is true if White is to move, the estimate and the window are from White's point of view like the static estimate
+    public static int evaluate_moves(GameCalculations game, long pos, SearchStats stats, SearchContext search, int depth, int ply, boolean max, int alpha, int beta) {
+        search.prepare(ply + depth + 1);
+        alpha = Math.max(alpha, -Integer.MAX_VALUE);
+
+        if(max){
+            return negamax(game, pos, stats, search, depth, ply, true, alpha, beta);
+        }
+        return -negamax(game, pos, stats, search, depth, ply, false, -beta, -alpha);
+    }
+
+    // Negamax form of alpha beta, both sides maximize the estimate from their own point of view
+    // Returns the estimate of pos for the side to move, the window is from the same point of view. The best line
+    // below pos is left in the principal variation table at ply.
+    private static int negamax(GameCalculations game, long pos, SearchStats stats, SearchContext search, int depth, int ply, boolean white, int alpha, int beta) {
+        search.pv.clear(ply);
+
+        // Give up on the iteration once the time budget has run out, the result is discarded by the caller
+        if(search.time_up()) {
+            return 0;
+        }
 
         if(depth == 0) {
-            // Return the position and its estimate if the depth is 0
-            temp.setMove(pos, game.estimate_position(pos));
-            moves.add(temp);
-            return temp;
+            // Settle pending jumps and king exits before the position is estimated
+            if(search.quiescence){
+                return quiesce(game, pos, stats, search, ply, QUIESCENCE_PLIES, white, alpha, beta);
+            }
+
+            // Return the estimate of the position if the depth is 0
+            stats.leaf(ply);
+            int estimate = game.estimate_position(pos);
+            return white ? estimate : -estimate;
         }
 
-        // Check if White or Black has the won the game and return the position and estimate if true
+        // Check if White or Black has the won the game and return the estimate if true
         int estimate = game.estimate_position(pos);
         if(estimate == 100 || estimate == -100){
-            temp.setMove(pos, estimate);
-            moves.add(temp);
-            return temp;
+            stats.terminal_win(ply);
+            return white ? estimate : -estimate;
         }
 
-        if(max){
-            // Code for the maximizer (White's turn)
-            bestVal = Integer.MIN_VALUE;
-
-            // For each White piece on the board, evaluate the next move
-            for(int i = 0; i < pos.length; i++) {
-                if (pos[i].equals("W") || pos[i].equals("w")) {
-                    temp = evaluate_moves(game, game.generate_move(pos, i), moves, depth - 1, false, alpha, beta);
-                    possibleMoves.add(temp);
-
-                    if(bestVal < temp.getEstimate()){
-                        bestVal = temp.getEstimate();
-                        min_max = index;
-                    }
-                    alpha = Math.max(alpha, temp.getEstimate());
-                    index++;
-
-                    // Prune a branch in the game tree if a contradiction occurs
-                    if(beta <= alpha){
-                        break;
-                    }
+        // A position in the endgame tablebase is not searched, its game theoretic value is known
+        if(game.tablebase != null){
+            int score = game.tablebase.score(pos, white);
+            if(score != Tablebase.NONE){
+                stats.tablebase_hit();
+                return score;
+            }
+        }
+
+        // Reuse the result of an earlier search of this position if it was searched to the same depth and its bound decides the window
+        // Deeper results are not used, a position can recur at a different depth and its estimate must match plain minimax
+        // Entries are keyed on the canonical form of the position, the best move is stored for the canonical board
+        long key = 0;
+        boolean flipped = false;
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        int bestMove = -1;
+        int hashMove = -1;
+        TranspositionTable tt = search.tt;
+        if(tt != null){
+            long canonical = TranspositionTable.canonical(pos);
+            flipped = canonical != pos;
+            key = TranspositionTable.hash(canonical, white != flipped);
+            long entry = tt.probe(key);
+            if(entry != 0){
+                hashMove = TranspositionTable.move(entry);
+                hashMove = flipped ? TranspositionTable.flip_move(hashMove) : hashMove;
+            }
+            if(entry != 0 && TranspositionTable.depth(entry) == depth){
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)){
+                    return score;
                 }
             }
+        }
 
-            // Amongst all moves generated, return the position with the highest estimate
-            temp.setMove(pos, possibleMoves.get(min_max).getEstimate());
-            return temp;
-        } else {
-            // Code for the minimizer (Black's turn)
-            bestVal = Integer.MAX_VALUE;
-
-            // For each Black piece on the board, evaluate the next move
-            for(int i = 0; i < pos.length; i++) {
-                if (pos[i].equals("B") || pos[i].equals("b")) {
-                    temp = evaluate_moves(game, flip_position(game.generate_move(flip_position(pos), (i - 15) * -1)), moves, depth - 1, true, alpha, beta);
-                    possibleMoves.add(temp);
-
-                    if(bestVal > temp.getEstimate()){
-                        bestVal = temp.getEstimate();
-                        min_max = index;
-                    }
-                    beta = Math.min(beta, temp.getEstimate());
-                    index++;
-
-                    // Prune a branch in the game tree if a contradiction occurs
-                    if(beta <= alpha){
-                        break;
-                    }
+        stats.interior_node(ply);
+
+        // Moves are searched in the order chosen by the move ordering heuristics
+        MoveOrdering ordering = search.ordering;
+        int[] list = ordering.list(ply);
+        int count = ordering.order(white ? Board.white_pieces(pos) : Board.black_pieces(pos), white, ply, hashMove, list);
+        int bestVal = Integer.MIN_VALUE;
+
+        // At a frontier node whose estimate is too far below alpha for any quiet move to catch up, only noisy moves are
+        // searched. A quiet move can at most raise the estimate by the futility margin, which becomes the fail low bound.
+        boolean futile = false;
+        if(search.futility && depth == 1){
+            int bound = (white ? estimate : -estimate) + game.futility_margin(pos, white);
+            if(bound <= alpha){
+                futile = true;
+                bestVal = bound;
+            }
+        }
+
+        // For each piece of the side to move, evaluate the next move
+        int searched = 0;
+        for(int n = 0; n < count; n++) {
+            int i = list[n];
+            long child = game.generate_move(pos, i, white);
+            boolean noisy = is_noisy(pos, child, white);
+            if(futile && !noisy){
+                stats.futility_prune();
+                continue;
+            }
+
+            // A king about to leave the board is searched one ply deeper, as long as the per ply buffers allow it
+            int childDepth = depth - 1;
+            if(search.extensions && ply + depth + 2 <= search.plies && king_near_exit(child)){
+                stats.extension();
+                childDepth++;
+            }
+
+            int value;
+            if(search.lmr && n >= LMR_MOVES && depth >= LMR_DEPTH && !noisy && childDepth < depth){
+                // A late quiet move is first searched one ply shallower with a null window, and again at full depth
+                // if it turns out to be better than alpha
+                stats.late_move_reduction();
+                value = -negamax(game, child, stats, search, childDepth - 1, ply + 1, !white, -alpha - 1, -alpha);
+                if(value > alpha && !search.aborted){
+                    stats.late_move_re_search();
+                    value = search_child(game, child, stats, search, childDepth, ply + 1, !white, alpha, beta, searched == 0);
                 }
+            } else {
+                value = search_child(game, child, stats, search, childDepth, ply + 1, !white, alpha, beta, searched == 0);
+            }
+            searched++;
+            if(search.aborted){
+                return 0;
             }
 
-            // Amongst all moves generated, return the position with the highest estimate
-            temp.setMove(pos, possibleMoves.get(min_max).getEstimate());
-            return temp;
+            if(bestVal < value){
+                bestVal = value;
+                bestMove = i;
+                search.pv.update(ply, i);
+            }
+            alpha = Math.max(alpha, value);
+
+            // Prune a branch in the game tree if a contradiction occurs
+            if(beta <= alpha){
+                stats.cutoff(searched == 1, ply);
+                ordering.cutoff(white, ply, i, depth);
+                break;
+            }
+        }
+
+        // Amongst all moves generated, return the highest estimate for the side to move
+        store(tt, key, depth, bestVal, alphaOrig, betaOrig, flipped ? TranspositionTable.flip_move(bestMove) : bestMove);
+        return bestVal;
+    }
+
+    // Quiescence search of a position at the depth limit, returns its estimate for the side to move like negamax
+    // A jump sends the jumped piece back to the far end of the board and can move a king by most of the board, so
+    // the static estimate is only trusted once no such move is pending. Only the noisy moves are searched: jumps
+    // that move an opponent piece and moves that take the king of the side to move off the board. The side to move
+    // may also stand pat on the static estimate, which is a lower bound on its score as it can choose a quiet move
+    // instead. At most plies noisy moves are added below the depth limit, jumped pieces can jump back.
+    // Quiescence positions are not stored in the transposition table and have no principal variation.
+    private static int quiesce(GameCalculations game, long pos, SearchStats stats, SearchContext search, int ply, int plies, boolean white, int alpha, int beta) {
+        if(search.time_up()) {
+            return 0;
+        }
+
+        // A won position is final, any other position is evaluated to stand pat
+        int estimate = game.estimate_position(pos);
+        if(estimate == 100 || estimate == -100){
+            stats.terminal_win(ply);
+            return white ? estimate : -estimate;
+        }
+        stats.leaf(ply);
+
+        int bestVal = white ? estimate : -estimate;
+        if(plies == 0 || bestVal >= beta){
+            return bestVal;
+        }
+        alpha = Math.max(alpha, bestVal);
+
+        int searched = 0;
+        for(int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos); pieces != 0; pieces &= pieces - 1) {
+            long child = game.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white);
+            if(!is_noisy(pos, child, white)){
+                continue;
+            }
+
+            stats.quiescence_node();
+            int value = -quiesce(game, child, stats, search, ply + 1, plies - 1, !white, -beta, -alpha);
+            if(search.aborted){
+                return 0;
+            }
+
+            bestVal = Math.max(bestVal, value);
+            alpha = Math.max(alpha, value);
+            if(beta <= alpha){
+                stats.cutoff(searched == 0, ply);
+                break;
+            }
+            searched++;
+        }
+
+        return bestVal;
+    }
+
+    // Returns true if the move from pos to child moves an opponent piece by jumping it or takes the king of the side
+    // to move off the board, the moves that the quiescence search follows and futility pruning never skips
+    private static boolean is_noisy(long pos, long child, boolean white){
+        if(white){
+            return Board.black_pieces(child) != Board.black_pieces(pos) || Board.mask(child, Board.WHITE_KING) == 0;
         }
+        return Board.white_pieces(child) != Board.white_pieces(pos) || Board.mask(child, Board.BLACK_KING) == 0;
     }
 
-    // Method for reversing a position to make a move for Black
-    public static String[] flip_position(String[] pos){
-        String[] reverse = Arrays.copyOf(pos, pos.length);
-        String temp;
-        int len = reverse.length;
-
-        // Reverse the position string
-        for(int i = 0; i < len/2; i++){
-            temp = reverse[i];
-            reverse[i] = reverse[len - 1 - i];
-            reverse[len - 1 - i] = temp;
-        }
-
-        // Replace all Black piece with White pieces and all White pieces with Black pieces
-        for(int i = 0; i < len; i++){
-            if(reverse[i].equals("W")){
-                reverse[i] = "B";
-            } else if(reverse[i].equals("w")){
-                reverse[i] = "b";
-            } else if(reverse[i].equals("B")){
-                reverse[i] = "W";
-            } else if(reverse[i].equals("b")){
-                reverse[i] = "w";
+    // Returns true if either king leaves the board with its next move, because no free cell is left in front of it
+    private static boolean king_near_exit(long board){
+        int free = ~Board.occupied(board) & Board.CELLS;
+        int whiteKing = Board.mask(board, Board.WHITE_KING);
+        int blackKing = Board.mask(board, Board.BLACK_KING);
+        return (whiteKing != 0 && (free & -(whiteKing << 1)) == 0)
+                || (blackKing != 0 && (free & (blackKing - 1)) == 0);
+    }
+
+    // Returns the estimate of a child position from the point of view of its parent, white is the side to move at the child
+    // With principal variation search only the first child gets the full window. The others are searched with a null
+    // window that only tells whether they are better than alpha, and searched again with the full window if they are.
+    private static int search_child(GameCalculations game, long child, SearchStats stats, SearchContext search, int depth, int ply, boolean white, int alpha, int beta, boolean first) {
+        if(first || !search.pvs){
+            return -negamax(game, child, stats, search, depth, ply, white, -beta, -alpha);
+        }
+
+        int value = -negamax(game, child, stats, search, depth, ply, white, -alpha - 1, -alpha);
+        if(value > alpha && value < beta && !search.aborted){
+            stats.pvs_re_search();
+            value = -negamax(game, child, stats, search, depth, ply, white, -beta, -alpha);
+        }
+        return value;
+    }
+
+    // Returns the opening book entry of a position with White to move if it was searched at least to depth, or 0
+    public static int book_entry(GameCalculations game, long pos, int depth){
+        if(game.book == null){
+            return 0;
+        }
+        int entry = game.book.probe(pos);
+        return entry != 0 && OpeningBook.depth(entry) >= depth ? entry : 0;
+    }
+
+    // Method for formatting a principal variation as the boards it passes through, starting with White's move from pos
+    public static String principal_variation(GameCalculations game, long pos, int[] line){
+        StringBuilder boards = new StringBuilder();
+        boolean white = true;
+
+        for(int move : line){
+            pos = game.generate_move(pos, move, white);
+            white = !white;
+            if(boards.length() > 0){
+                boards.append(' ');
             }
+            boards.append(Board.to_string(pos));
+        }
+
+        return boards.toString();
+    }
+
+    // Method for saving a search result in the transposition table with the bound implied by the original window
+    private static void store(TranspositionTable tt, long key, int depth, int bestVal, int alpha, int beta, int bestMove){
+        if(tt == null){
+            return;
+        }
+
+        int bound = TranspositionTable.EXACT;
+        if(bestVal <= alpha){
+            bound = TranspositionTable.UPPER;
+        } else if(bestVal >= beta){
+            bound = TranspositionTable.LOWER;
+        }
+        tt.store(key, depth, bestVal, bound, bestMove);
+    }
+
+    // Settings and state shared by every node of one search
+    static class SearchContext{
+        TranspositionTable tt;
+        MoveOrdering ordering = new MoveOrdering(true, true, true);
+        long deadline = Long.MAX_VALUE;
+        // Optional condition polled with the clock, used by the parallel search to stop cancelled subtrees
+        BooleanSupplier stop;
+        boolean aborted;
+        long nodes;
+        int bestMove = -1;
+        int completedDepth;
+        // Quiescence search of jumps and king exits at the depth limit
+        boolean quiescence;
+        // Selective search: late move reductions, futility pruning at frontier nodes and king exit extensions
+        boolean lmr;
+        boolean futility;
+        boolean extensions;
+        // Number of plies the per ply buffers were sized for by prepare
+        int plies;
+        // Principal variation search, and the half width of the aspiration window used by iterative deepening (0 for none)
+        boolean pvs;
+        int aspiration;
+        // Principal variations of the nodes being searched, and the best line of the last completed root search
+        final PrincipalVariation pv = new PrincipalVariation();
+        int[] principalVariation = new int[0];
+
+        // Method for sizing the per ply buffers for a search that goes at most plies - 1 plies below the root
+        // Move lists, killer moves and principal variations are indexed by ply and boards are passed by value, so
+        // once the buffers are sized the search below the root allocates nothing
+        // Extensions may take a line MAX_EXTENSIONS plies further
+        public void prepare(int plies){
+            this.plies = plies + (extensions ? MAX_EXTENSIONS : 0);
+            pv.ensure(this.plies);
+            ordering.ensure(this.plies);
         }
 
-        return reverse;
+        // Returns true once the deadline has passed or the search was stopped, both are only checked every 1024 nodes
+        public boolean time_up(){
+            if(!aborted && (++nodes & 1023) == 0 && (System.nanoTime() >= deadline || (stop != null && stop.getAsBoolean()))){
+                aborted = true;
+            }
+            return aborted;
+        }
     }
 
     static class ABMove{
-        String[] position;
+        long position;
         int estimate;
 
-        public void setMove(String[] position, int estimate){
+        public void setMove(long position, int estimate){
             this.position = position;
             this.estimate = estimate;
         }
 
-        public String[] getPosition(){
+        public long getPosition(){
             return position;
         }
 
@@ -235,82 +728,46 @@ public class AlphaBeta {
 
     // Subclass containing methods for the Move Generator, Static Estimator, and determining if White or Black has won
     static class GameCalculations {
-        // Method for generating the move of a single White piece on the game board
-        public String[] generate_move(String[] board, int i){
-            String[] P = Arrays.copyOf(board, board.length);
+        // Optional endgame tablebase probed by the search below the root, shared by the threads of a parallel search
+        Tablebase tablebase;
+        // Optional opening book looked up at the root
+        OpeningBook book;
 
-            if(i == 15){
-                // if White is at the right end of the board, jump out
-                P[i] = "x";
-            } else {
-                // if there are no free spaces from i to the last position, jump out of the board
-                for(int j = i + 1; j < P.length; j++){
-                    if(j == 15 && !P[j].equals("x")) {
-                        // if no free space on the board, jump out of the game board
-                        P[i] = "x";
-                        break;
-                    } else if(P[j].equals("x")) {
-                        // if a free space is found, advance/jump to it
-                        P[j] = P[i];
-                        P[i] = "x";
-
-                        // if White jumps over a single Black piece, move the Black piece to the rightmost free position
-                        if((j - i == 2) && (P[j - 1].equals("b") || P[j - 1].equals("B"))){
-                            for(int k = P.length - 1; k >= 0; k--){
-                                if(P[k].equals("x")){
-                                    if(k != j - 2){
-                                        P[k] = P[j - 1];
-                                        P[j - 1] = "x";
-                                    }
-                                    break;
-                                }
-                            }
-                        }
-
-                        break;
-                    }
-                }
-            }
+        // Method for generating the move of a single White piece on the game board
+        public long generate_move(long board, int i){
+            return Board.generate_move(board, i);
+        }
 
-            return P;
+        // Method for generating the move of the piece on cell i for White or Black
+        public long generate_move(long board, int i, boolean white){
+            return Board.generate_move(board, i, white);
         }
 
         // Method for calculating the static estimate of a position
         // First checks if White or Black has won and returns 100 or -100 respectively if true
         // Otherwise, calculates (i + j - 15), where i is the index of W and j is the index of B, and return it
-        public int estimate_position(String[] P){
-            int i = white_win(P);
-            int j = black_win(P);
-
-            if(i == -1){
-                return 100;
-            } else if(j == -1){
-                return -100;
-            } else {
-                return (i + j - 15);
-            }
+        public int estimate_position(long P){
+            return Board.estimate_position(P);
         }
 
-        // Method for checking if White has won the game by checking if "W" is present on the board
-        public int white_win(String[] P){
-            for(int i = 0; i < P.length; i++){
-                if(P[i].equals("W")){
-                    return i;
-                }
-            }
+        // Method for bounding how much a move that does not jump an opponent piece or take a king off the board can
+        // raise the estimate for the side to move, used by futility pruning
+        // Only the kings count in the estimate, so the bound is the number of cells the king of the side to move advances
+        public int futility_margin(long P, boolean white){
+            int king = white ? white_win(P) : black_win(P);
+            long child = generate_move(P, king, white);
+            int moved = white ? white_win(child) : black_win(child);
+            return moved == -1 ? 0 : Math.abs(moved - king);
+        }
 
-            return -1;
+        // Method for checking if White has won the game by checking if "W" is present on the board
+        public int white_win(long P){
+            return Board.white_win(P);
         }
 
         // Method for checking if Black has won the game by checking if "B" is present on the board
-        public int black_win(String[] P){
-            for(int i = 0; i < P.length; i++){
-                if(P[i].equals("B")){
-                    return i;
-                }
-            }
-
-            return -1;
+        public int black_win(long P){
+            return Board.black_win(P);
         }
     }
 }
\ No newline at end of file
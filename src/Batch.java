@@ -0,0 +1,148 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Batch evaluation of many positions in one JVM
+// The input file holds one board per line. Boards are evaluated concurrently on a fixed pool of worker threads and
+// every result is written as one line: board<TAB>bestMove<TAB>estimate<TAB>nodes, where bestMove is the board after
+// the chosen move and nodes is the number of positions evaluated by static estimation.
+// Results are written in input order unless --unordered is given. Only a fixed window of boards (a few per thread)
+// is in flight at any time, so memory use does not grow with the size of the input.
+public class Batch {
+    private static final String USAGE = "Usage: java Batch <input_file> <output_file> <minimax|minimax-black|minimax-improved|alphabeta> <depth> [--threads <count>] [--unordered] [--tt-mb <megabytes per thread>]";
+
+    // Number of boards in flight per worker thread
+    private static final int WINDOW_PER_THREAD = 4;
+
+    public static void main(String[] args) {
+        if(args.length < 4){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the depth
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean unordered = false;
+        int ttMegabytes = 16;
+        for(int a = 4; a < args.length; a++){
+            if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--unordered")){
+                unordered = true;
+            } else if(args[a].equals("--tt-mb") && a + 1 < args.length){
+                ttMegabytes = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        String algorithm = args[2];
+        int depth = Integer.parseInt(args[3]);
+        if(!Evaluator.is_algorithm(algorithm)){
+            System.err.println("Error: Unknown algorithm: " + algorithm);
+            return;
+        }
+        Evaluator evaluator = new Evaluator(ttMegabytes);
+        Job job = board -> format(board, evaluator.evaluate(algorithm, Board.from_string(board), depth, 0, null));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try(BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]));
+            BufferedWriter writer = Files.newBufferedWriter(Paths.get(args[1]))){
+            long count = unordered ? run_unordered(reader, writer, pool, job, threads * WINDOW_PER_THREAD)
+                                   : run_ordered(reader, writer, pool, job, threads * WINDOW_PER_THREAD);
+            System.out.println("Boards evaluated: " + count);
+        } catch(IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } catch(InterruptedException | ExecutionException e) {
+            System.err.println("Error: Batch evaluation failed: " + e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Writes results in input order, the oldest board is waited for once the window is full
+    private static long run_ordered(BufferedReader reader, BufferedWriter writer, ExecutorService pool, Job job, int window)
+            throws IOException, InterruptedException, ExecutionException {
+        ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+        long count = 0;
+        String line;
+
+        while((line = next_board(reader)) != null){
+            String board = line;
+            pending.add(pool.submit(() -> job.evaluate(board)));
+            count++;
+
+            if(pending.size() >= window){
+                writer.write(pending.poll().get());
+            }
+        }
+        while(!pending.isEmpty()){
+            writer.write(pending.poll().get());
+        }
+
+        return count;
+    }
+
+    // Writes results as soon as they complete
+    private static long run_unordered(BufferedReader reader, BufferedWriter writer, ExecutorService pool, Job job, int window)
+            throws IOException, InterruptedException, ExecutionException {
+        CompletionService<String> completed = new ExecutorCompletionService<String>(pool);
+        int inFlight = 0;
+        long count = 0;
+        String line;
+
+        while((line = next_board(reader)) != null){
+            String board = line;
+            completed.submit(() -> job.evaluate(board));
+            inFlight++;
+            count++;
+
+            if(inFlight >= window){
+                writer.write(completed.take().get());
+                inFlight--;
+            }
+        }
+        for(; inFlight > 0; inFlight--){
+            writer.write(completed.take().get());
+        }
+
+        return count;
+    }
+
+    // Returns the next board of the input, skipping blank lines and reporting lines that are too short
+    private static String next_board(BufferedReader reader) throws IOException {
+        String line;
+
+        while((line = reader.readLine()) != null){
+            line = line.trim();
+            if(line.length() >= Board.SIZE){
+                return line.substring(0, Board.SIZE);
+            }
+            if(!line.isEmpty()){
+                System.err.println("Error: Invalid board skipped: " + line);
+            }
+        }
+
+        return null;
+    }
+
+    // Returns the output line for a board and its evaluation
+    private static String format(String board, Evaluator.Result result){
+        return board + '\t' + Board.to_string(result.getPosition()) + '\t' + result.getEstimate() + '\t' + result.getNodes() + '\n';
+    }
+
+    // Evaluation of a single input board into its output line
+    interface Job{
+        String evaluate(String board);
+    }
+}
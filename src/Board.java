@@ -0,0 +1,281 @@
+// Packed representation of a 16 cell game board shared by all engines
+// The board is stored in a single long as four 16 bit occupancy masks, one per piece kind:
+//   bits  0-15: White pawns ("w")
+//   bits 16-31: White king  ("W")
+//   bits 32-47: Black pawns ("b")
+//   bits 48-63: Black king  ("B")
+// Bit i of each mask corresponds to cell i of the text board. The text format is only used when reading and writing files.
+public final class Board {
+    public static final int SIZE = 16;
+
+    public static final int WHITE_PAWN = 0;
+    public static final int WHITE_KING = 1;
+    public static final int BLACK_PAWN = 2;
+    public static final int BLACK_KING = 3;
+
+    static final int CELLS = 0xFFFF;
+    private static final String PIECES = "wWbB";
+
+    // Moves are looked up in MoveTables unless the tables are switched off to check them against the computed moves
+    private static boolean moveTables = true;
+
+    private Board() {
+    }
+
+    // Method for converting a text board (e.g. "WwwwxxxxxxxxbbbB") into its packed form
+    // Any character other than w, W, b and B is treated as a free cell
+    public static long from_string(String str){
+        long board = 0L;
+
+        for(int i = 0; i < SIZE; i++){
+            int kind = PIECES.indexOf(str.charAt(i));
+            if(kind >= 0){
+                board |= 1L << (kind * SIZE + i);
+            }
+        }
+
+        return board;
+    }
+
+    // Method for converting a packed board back into its text form
+    public static String to_string(long board){
+        char[] out = new char[SIZE];
+
+        for(int i = 0; i < SIZE; i++){
+            out[i] = 'x';
+            for(int kind = 0; kind < 4; kind++){
+                if((board & (1L << (kind * SIZE + i))) != 0){
+                    out[i] = PIECES.charAt(kind);
+                    break;
+                }
+            }
+        }
+
+        return new String(out);
+    }
+
+    // Methods returning the 16 bit mask of a piece kind or group of pieces
+    public static int mask(long board, int kind){
+        return (int) (board >>> (kind * SIZE)) & CELLS;
+    }
+
+    public static int white_pieces(long board){
+        return (int) (board | (board >>> SIZE)) & CELLS;
+    }
+
+    public static int black_pieces(long board){
+        return (int) ((board >>> (2 * SIZE)) | (board >>> (3 * SIZE))) & CELLS;
+    }
+
+    public static int occupied(long board){
+        return (int) (board | (board >>> SIZE) | (board >>> (2 * SIZE)) | (board >>> (3 * SIZE))) & CELLS;
+    }
+
+    // Method returning the kind of piece on cell i, or -1 if the cell is free
+    public static int piece_at(long board, int i){
+        for(int kind = 0; kind < 4; kind++){
+            if((board & (1L << (kind * SIZE + i))) != 0){
+                return kind;
+            }
+        }
+
+        return -1;
+    }
+
+    // Method for generating the move of a single White piece on cell i of the game board
+    public static long generate_move(long board, int i){
+        return generate_move(board, i, true);
+    }
+
+    // Method for generating the move of the piece on cell i for the side to move
+    // White moves towards cell 15 and Black towards cell 0, the Black move is the mirror image of the White move
+    // so Black moves are generated directly without flipping the board
+    public static long generate_move(long board, int i, boolean white){
+        if(moveTables){
+            return table_move(board, i, white ? MoveTables.WHITE : MoveTables.BLACK, white ? 0 : 2 * SIZE, white ? 2 * SIZE : 0);
+        }
+        return white ? generate_white_move(board, i) : generate_black_move(board, i);
+    }
+
+    // Method for switching between the table driven move generator (the default) and computing every move
+    public static void use_move_tables(boolean enabled){
+        moveTables = enabled;
+    }
+
+    // Method for making a move with a lookup in the move tables of the side to move
+    // own and other are the bit offsets of the pawn masks of the moving side and of the opponent
+    private static long table_move(long board, int i, int[] table, int own, int other){
+        int entry = table[(occupied(board) << 4) | i];
+
+        // Clear the source cell and set the destination cell in the mask of the moving pawn or king
+        int kingShift = (board & (1L << (own + SIZE + i))) != 0 ? SIZE : 0;
+        long delta = (long) (entry & CELLS) << (own + kingShift);
+
+        // Move a jumped opponent pawn or king from the jumped cell to the relocation cell
+        if((entry & MoveTables.RELOCATE) != 0){
+            int jumped = (entry >>> 16) & 15;
+            if((board & ((1L << (other + jumped)) | (1L << (other + SIZE + jumped)))) != 0){
+                int relocated = (entry >>> 20) & 15;
+                kingShift = (board & (1L << (other + SIZE + jumped))) != 0 ? SIZE : 0;
+                delta |= ((1L << jumped) | (1L << relocated)) << (other + kingShift);
+            }
+        }
+
+        return board ^ delta;
+    }
+
+    // Computed moves, used when the move tables are switched off
+    // White pieces advance to the first free cell on their right
+    private static long generate_white_move(long board, int i){
+        long piece = (board & (1L << i)) | (board & (1L << (SIZE + i)));
+        long P = board & ~piece;
+
+        if(i == 15){
+            // if White is at the right end of the board, jump out
+            return P;
+        }
+
+        // Find the first free cell to the right of i, if there is none jump out of the board
+        int free = ~occupied(board) & CELLS & (CELLS << (i + 1));
+        if(free == 0){
+            return P;
+        }
+
+        // if a free space is found, advance/jump to it
+        int j = Integer.numberOfTrailingZeros(free);
+        P |= piece << (j - i);
+
+        // if White jumps over a single Black piece, move the Black piece to the rightmost free position
+        if(j - i == 2){
+            long jumped = (P & (1L << (2 * SIZE + j - 1))) | (P & (1L << (3 * SIZE + j - 1)));
+            if(jumped != 0){
+                int k = 31 - Integer.numberOfLeadingZeros(~occupied(P) & CELLS);
+                if(k != j - 2){
+                    P = (P & ~jumped) | (k > j - 1 ? jumped << (k - j + 1) : jumped >>> (j - 1 - k));
+                }
+            }
+        }
+
+        return P;
+    }
+
+    // Black pieces advance to the first free cell on their left
+    private static long generate_black_move(long board, int i){
+        long piece = (board & (1L << (2 * SIZE + i))) | (board & (1L << (3 * SIZE + i)));
+        long P = board & ~piece;
+
+        if(i == 0){
+            // if Black is at the left end of the board, jump out
+            return P;
+        }
+
+        // Find the first free cell to the left of i, if there is none jump out of the board
+        int free = ~occupied(board) & CELLS & ((1 << i) - 1);
+        if(free == 0){
+            return P;
+        }
+
+        // if a free space is found, advance/jump to it
+        int j = 31 - Integer.numberOfLeadingZeros(free);
+        P |= piece >>> (i - j);
+
+        // if Black jumps over a single White piece, move the White piece to the leftmost free position
+        if(i - j == 2){
+            long jumped = (P & (1L << (j + 1))) | (P & (1L << (SIZE + j + 1)));
+            if(jumped != 0){
+                int k = Integer.numberOfTrailingZeros(~occupied(P) & CELLS);
+                if(k != j + 2){
+                    P = (P & ~jumped) | (k < j + 1 ? jumped >>> (j + 1 - k) : jumped << (k - j - 1));
+                }
+            }
+        }
+
+        return P;
+    }
+
+    // Precomputed moves for every occupancy of the board and every source cell, built on first use
+    // An entry is indexed by (occupied cells << 4) | i and holds, for the piece on cell i:
+    //   bits  0-15: the source cell and the destination cell (only the source if the piece leaves the board)
+    //   bits 16-19: the cell jumped over
+    //   bits 20-23: the free cell a jumped opponent piece is moved to
+    //   bit  24   : set if the move jumps and the jumped piece has to be moved
+    // Whether the jumped cell holds an opponent piece depends on more than the occupancy and is checked by table_move.
+    private static final class MoveTables {
+        static final int RELOCATE = 1 << 24;
+        static final int[] WHITE = build(true);
+        static final int[] BLACK = build(false);
+
+        private static int[] build(boolean white){
+            int[] table = new int[(CELLS + 1) << 4];
+
+            for(int occupied = 0; occupied <= CELLS; occupied++){
+                for(int i = 0; i < SIZE; i++){
+                    // The first free cell in the direction of the move, -1 if the piece leaves the board
+                    int ahead = white ? ~occupied & CELLS & (CELLS << (i + 1)) : ~occupied & ((1 << i) - 1);
+                    int j = ahead == 0 ? -1 : white ? Integer.numberOfTrailingZeros(ahead) : 31 - Integer.numberOfLeadingZeros(ahead);
+                    int entry = 1 << i;
+
+                    if(j >= 0){
+                        entry |= 1 << j;
+                        if(Math.abs(j - i) == 2){
+                            // White pieces are moved to the rightmost free cell and Black pieces to the leftmost
+                            int after = (occupied & ~(1 << i)) | (1 << j);
+                            int free = ~after & CELLS;
+                            int k = white ? 31 - Integer.numberOfLeadingZeros(free) : Integer.numberOfTrailingZeros(free);
+                            if(k != i){
+                                entry |= RELOCATE | (((i + j) / 2) << 16) | (k << 20);
+                            }
+                        }
+                    }
+
+                    table[(occupied << 4) | i] = entry;
+                }
+            }
+
+            return table;
+        }
+    }
+
+    // Method for reversing a position to make a move for Black
+    // Each mask is mirrored and the White and Black masks are swapped
+    public static long flip_position(long board){
+        long whitePawns = reverse(mask(board, WHITE_PAWN));
+        long whiteKing = reverse(mask(board, WHITE_KING));
+        long blackPawns = reverse(mask(board, BLACK_PAWN));
+        long blackKing = reverse(mask(board, BLACK_KING));
+
+        return blackPawns | (blackKing << SIZE) | (whitePawns << (2 * SIZE)) | (whiteKing << (3 * SIZE));
+    }
+
+    private static int reverse(int cells){
+        return Integer.reverse(cells) >>> SIZE;
+    }
+
+    // Method for calculating the static estimate of a position
+    // First checks if White or Black has won and returns 100 or -100 respectively if true
+    // Otherwise, calculates (i + j - 15), where i is the index of W and j is the index of B, and return it
+    public static int estimate_position(long P){
+        int i = white_win(P);
+        int j = black_win(P);
+
+        if(i == -1){
+            return 100;
+        } else if(j == -1){
+            return -100;
+        } else {
+            return (i + j - 15);
+        }
+    }
+
+    // Method for checking if White has won the game, returns the index of "W" or -1 if it left the board
+    public static int white_win(long P){
+        int king = mask(P, WHITE_KING);
+        return king == 0 ? -1 : Integer.numberOfTrailingZeros(king);
+    }
+
+    // Method for checking if Black has won the game, returns the index of "B" or -1 if it left the board
+    public static int black_win(long P){
+        int king = mask(P, BLACK_KING);
+        return king == 0 ? -1 : Integer.numberOfTrailingZeros(king);
+    }
+}
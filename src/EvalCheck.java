@@ -0,0 +1,164 @@
+import java.util.Random;
+
+// Randomized check of the static estimators against the original string scanning versions
+// Random boards are played forward with random moves of both sides. At every position the estimate of
+// Board.estimate_position and of MiniMaxImproved, with the pawn score carried along the moves and computed from
+// scratch, must equal the estimate of the original estimators that scan the board one cell at a time.
+public class EvalCheck {
+    private static final String USAGE = "Usage: java EvalCheck <boards> [--moves <count>] [--seed <seed>]";
+
+    public static void main(String[] args) {
+        if(args.length < 1){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the number of boards
+        int boards = Integer.parseInt(args[0]);
+        int moves = 40;
+        long seed = System.nanoTime();
+        for(int a = 1; a < args.length; a++){
+            if(args[a].equals("--moves") && a + 1 < args.length){
+                moves = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--seed") && a + 1 < args.length){
+                seed = Long.parseLong(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        Random random = new Random(seed);
+        MiniMaxImproved.GameCalculations improved = new MiniMaxImproved.GameCalculations();
+        long positions = 0;
+        long mismatches = 0;
+
+        for(int b = 0; b < boards; b++){
+            long pos = random_board(random);
+            int pawns = improved.pawn_score(pos);
+            boolean white = random.nextBoolean();
+
+            for(int m = 0; m <= moves; m++){
+                positions++;
+                if(!check(improved, pos, pawns)){
+                    mismatches++;
+                    if(mismatches <= 10){
+                        System.out.println("Mismatch: " + Board.to_string(pos));
+                    }
+                }
+
+                // Stop once a king has left the board, no moves are made from a won position
+                int estimate = Board.estimate_position(pos);
+                if(estimate == 100 || estimate == -100){
+                    break;
+                }
+
+                int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+                long child = Board.generate_move(pos, nth_piece(pieces, random.nextInt(Integer.bitCount(pieces))), white);
+                pawns = improved.update_pawn_score(pos, child, pawns);
+                pos = child;
+                white = !white;
+            }
+        }
+
+        System.out.println("Seed: " + seed);
+        System.out.println("Positions checked: " + positions);
+        System.out.println("Mismatches: " + mismatches);
+        if(mismatches > 0){
+            System.exit(1);
+        }
+    }
+
+    // Returns true if every estimator agrees with its original version on pos
+    private static boolean check(MiniMaxImproved.GameCalculations improved, long pos, int pawns){
+        String board = Board.to_string(pos);
+        int expected = original_estimate(board);
+        int expectedImproved = original_improved_estimate(board);
+
+        return Board.estimate_position(pos) == expected
+                && improved.estimate_position(pos) == expectedImproved
+                && improved.estimate_position(pos, pawns) == expectedImproved;
+    }
+
+    // Returns a board with one king of each side and up to six pawns of each side on random cells
+    private static long random_board(Random random){
+        char[] cells = "xxxxxxxxxxxxxxxx".toCharArray();
+        place(cells, 'W', 1, random);
+        place(cells, 'B', 1, random);
+        place(cells, 'w', random.nextInt(7), random);
+        place(cells, 'b', random.nextInt(7), random);
+        return Board.from_string(new String(cells));
+    }
+
+    private static void place(char[] cells, char piece, int count, Random random){
+        while(count > 0){
+            int i = random.nextInt(Board.SIZE);
+            if(cells[i] == 'x'){
+                cells[i] = piece;
+                count--;
+            }
+        }
+    }
+
+    // Returns the index of the nth piece (counting from 0) in a mask of pieces
+    private static int nth_piece(int pieces, int n){
+        for(; n > 0; n--){
+            pieces &= pieces - 1;
+        }
+        return Integer.numberOfTrailingZeros(pieces);
+    }
+
+    // Original static estimate, (i + j - 15) where i is the index of the first W and j of the first B
+    private static int original_estimate(String P){
+        int i = P.indexOf('W');
+        int j = P.indexOf('B');
+
+        if(i == -1){
+            return 100;
+        } else if(j == -1){
+            return -100;
+        } else {
+            return (i + j - 15);
+        }
+    }
+
+    // Original MiniMaxImproved estimate, scanning every cell of the board
+    private static int original_improved_estimate(String P){
+        int whiteKingPos = -1;
+        int blackKingPos = -1;
+        int whitePawnVal = 0;
+        int blackPawnVal = 0;
+
+        // Assign position and piece type scores
+        for(int i = 0; i < P.length(); i++){
+            switch(P.charAt(i)){
+                case 'W':
+                    whiteKingPos = i;
+                    break;
+                case 'B':
+                    blackKingPos = i;
+                    break;
+                case 'w':
+                    whitePawnVal += (i * 2);
+                    break;
+                case 'b':
+                    blackPawnVal += ((15 - i) * 2);
+                    break;
+            }
+        }
+
+        // Check if White or Black has won
+        if(whiteKingPos == -1){
+            return 100;
+        }
+        if(blackKingPos == -1){
+            return -100;
+        }
+
+        // Calculate positional advantage of White and Black
+        int positionScore = (whiteKingPos - blackKingPos) * 5;
+
+        // Return final estimate
+        return positionScore + (whitePawnVal - blackPawnVal);
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Command line client for EvalServer
+// Sends a single request and prints the reply, or with --bench sends every board of a file and reports the
+// throughput and latency of the server. In bench mode each connection keeps up to a window of requests in flight.
+public class EvalClient {
+    private static final String USAGE = "Usage: java EvalClient [--port <port> | --socket <path>] <algorithm> <depth> <board> [--timeout-ms <milliseconds>]\n"
+                                      + "       java EvalClient [--port <port> | --socket <path>] --bench <board_file> <algorithm> <depth> [--connections <count>] [--window <requests>]";
+
+    public static void main(String[] args) {
+        // Read the connection settings and options, the rest are positional arguments
+        int port = 7464;
+        String socket = null;
+        String benchFile = null;
+        long timeoutMillis = 0;
+        int connections = 1;
+        int window = 8;
+        List<String> positional = new ArrayList<String>();
+        for(int a = 0; a < args.length; a++){
+            if(args[a].equals("--port") && a + 1 < args.length){
+                port = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--socket") && a + 1 < args.length){
+                socket = args[++a];
+            } else if(args[a].equals("--bench") && a + 1 < args.length){
+                benchFile = args[++a];
+            } else if(args[a].equals("--timeout-ms") && a + 1 < args.length){
+                timeoutMillis = Long.parseLong(args[++a]);
+            } else if(args[a].equals("--connections") && a + 1 < args.length){
+                connections = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--window") && a + 1 < args.length){
+                window = Integer.parseInt(args[++a]);
+            } else if(args[a].startsWith("--")){
+                System.err.println(USAGE);
+                return;
+            } else {
+                positional.add(args[a]);
+            }
+        }
+        if(positional.size() != (benchFile == null ? 3 : 2)){
+            System.err.println(USAGE);
+            return;
+        }
+
+        try{
+            if(benchFile == null){
+                request(socket, port, positional.get(0), positional.get(1), positional.get(2), timeoutMillis);
+            } else {
+                bench(socket, port, benchFile, positional.get(0), positional.get(1), connections, window);
+            }
+        } catch(IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Sends one request and prints the reply
+    private static void request(String socket, int port, String algorithm, String depth, String board, long timeoutMillis) throws IOException {
+        try(EvalServer.LineChannel channel = new EvalServer.LineChannel(EvalServer.connect(socket, port))){
+            channel.write_line("1 " + algorithm + " " + depth + " " + board + (timeoutMillis > 0 ? " " + timeoutMillis : ""));
+            System.out.println(channel.read_line());
+            channel.write_line("QUIT");
+        }
+    }
+
+    // Sends every board of the file spread over the given number of connections and prints the throughput,
+    // the latency percentiles and the number of replies that were not OK
+    private static void bench(String socket, int port, String file, String algorithm, String depth, int connections, int window)
+            throws IOException, InterruptedException {
+        List<String> boards = new ArrayList<String>();
+        for(String line : Files.readAllLines(Paths.get(file))){
+            line = line.trim();
+            if(line.length() >= Board.SIZE){
+                boards.add(line.substring(0, Board.SIZE));
+            }
+        }
+
+        long[] latencies = new long[boards.size()];
+        AtomicLong failures = new AtomicLong();
+        Thread[] senders = new Thread[connections];
+        IOException[] errors = new IOException[connections];
+        long start = System.nanoTime();
+
+        for(int c = 0; c < connections; c++){
+            int first = c;
+            EvalServer.LineChannel channel = new EvalServer.LineChannel(EvalServer.connect(socket, port));
+            senders[c] = new Thread(() -> {
+                try(EvalServer.LineChannel ch = channel){
+                    run_connection(ch, boards, first, connections, algorithm, depth, window, latencies, failures);
+                } catch(IOException e) {
+                    errors[first] = e;
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "bench-" + c);
+            senders[c].start();
+        }
+        for(Thread t : senders){
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        for(IOException e : errors){
+            if(e != null){
+                throw e;
+            }
+        }
+
+        Arrays.sort(latencies);
+        System.out.println("Requests: " + boards.size() + " over " + connections + " connections (window " + window + ")");
+        System.out.println(String.format("Throughput: %.1f requests/s", boards.size() / (elapsed / 1e9)));
+        System.out.println(String.format("Latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms",
+                percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 100)));
+        System.out.println("Failed replies: " + failures.get());
+    }
+
+    // Pipelines boards first, first + step, ... on one connection, a reader thread collects the replies
+    // If the server closes the connection early the replies still missing are counted as failed and sending stops
+    private static void run_connection(EvalServer.LineChannel channel, List<String> boards, int first, int step, String algorithm,
+                                       String depth, int window, long[] latencies, AtomicLong failures)
+            throws IOException, InterruptedException {
+        Semaphore permits = new Semaphore(window);
+        Map<String, Long> sent = new ConcurrentHashMap<String, Long>();
+        int expected = (boards.size() - first + step - 1) / step;
+        AtomicBoolean closed = new AtomicBoolean();
+
+        Thread reader = new Thread(() -> {
+            int received = 0;
+            try{
+                for(; received < expected; received++){
+                    String reply = channel.read_line();
+                    if(reply == null){
+                        break;
+                    }
+                    String[] words = reply.split(" ");
+                    Long startTime = sent.remove(words[0]);
+                    if(startTime != null){
+                        latencies[Integer.parseInt(words[0])] = System.nanoTime() - startTime;
+                    }
+                    if(words.length < 2 || !words[1].equals("OK")){
+                        failures.incrementAndGet();
+                    }
+                    permits.release();
+                }
+            } catch(IOException e) {
+                // The connection is gone, the replies that did not arrive are counted below
+            }
+
+            // Let the sender go if it waits for a permit that no reply will release
+            if(received < expected){
+                failures.addAndGet(expected - received);
+                closed.set(true);
+                permits.release(window);
+            }
+        });
+        reader.start();
+
+        for(int i = first; i < boards.size(); i += step){
+            permits.acquire();
+            if(closed.get()){
+                break;
+            }
+            sent.put(Integer.toString(i), System.nanoTime());
+            try{
+                channel.write_line(i + " " + algorithm + " " + depth + " " + boards.get(i));
+            } catch(IOException e) {
+                // The reader sees the closed connection as well and counts the missing replies
+                break;
+            }
+        }
+        reader.join();
+        if(!closed.get()){
+            channel.write_line("QUIT");
+        }
+    }
+
+    // Returns the latency at the given percentile in milliseconds, latencies must be sorted
+    private static double percentile(long[] latencies, int p){
+        if(latencies.length == 0){
+            return 0;
+        }
+        int index = Math.min(latencies.length - 1, (int) Math.ceil(p / 100.0 * latencies.length) - 1);
+        return latencies[Math.max(0, index)] / 1e6;
+    }
+}
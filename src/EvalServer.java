@@ -0,0 +1,414 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Long running evaluation server, so a request does not pay for a JVM start and a cold JIT
+// The server listens on a local TCP port or a Unix domain socket and speaks a line based protocol. Every connection
+// may pipeline any number of requests, replies are sent as soon as they complete and carry the request id.
+//   <id> <algorithm> <depth> <board> [<timeout_ms>]   ->  <id> OK <best_board> <estimate> <nodes>
+//   CANCEL <id>                                        ->  <id> CANCELLED
+//   PING                                               ->  PONG
+//   QUIT                                                   closes the connection
+// A request that is not answered within its timeout is answered with <id> TIMEOUT, and a malformed request with
+// <id> ERROR <message>. An alphabeta request with a timeout runs an iterative deepening search capped at depth and
+// answers with the best move of the deepest iteration completed in time. Every engine polls whether its request was
+// answered, so a timeout, a CANCEL or a closed connection stops the search and frees its engine thread. Depths above
+// --max-depth are refused, since a minimax request without a timeout holds its thread until the search is done.
+// The engines run on a fixed pool of threads that each keep their own warmed up transposition table.
+public class EvalServer {
+    private static final String USAGE = "Usage: java EvalServer [--port <port> | --socket <path>] [--threads <count>] [--tt-mb <megabytes per thread>] [--max-depth <depth>]";
+
+    // Board searched by every algorithm at startup to warm up the JIT
+    private static final String WARM_UP_BOARD = "WwwwxxxxxxxxbbbB";
+
+    private final Evaluator evaluator;
+    private final ExecutorService engines;
+    private final ScheduledThreadPoolExecutor timers;
+    private final int maxDepth;
+
+    public EvalServer(int threads, int ttMegabytes, int maxDepth){
+        this.evaluator = new Evaluator(ttMegabytes);
+        this.maxDepth = maxDepth;
+        this.engines = Executors.newFixedThreadPool(threads);
+        this.timers = new ScheduledThreadPoolExecutor(1);
+        this.timers.setRemoveOnCancelPolicy(true);
+    }
+
+    public static void main(String[] args) {
+        // Read the optional settings
+        int port = 7464;
+        String socket = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ttMegabytes = 16;
+        int maxDepth = 20;
+        for(int a = 0; a < args.length; a++){
+            if(args[a].equals("--port") && a + 1 < args.length){
+                port = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--socket") && a + 1 < args.length){
+                socket = args[++a];
+            } else if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--tt-mb") && a + 1 < args.length){
+                ttMegabytes = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--max-depth") && a + 1 < args.length){
+                maxDepth = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        EvalServer server = new EvalServer(threads, ttMegabytes, maxDepth);
+        server.warm_up(threads);
+
+        try(ServerSocketChannel listener = open(socket, port)){
+            System.out.println("Listening on " + listener.getLocalAddress());
+            server.serve(listener);
+        } catch(IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    // Opens the listening socket, a Unix domain socket if a path is given and a loopback TCP port otherwise
+    static ServerSocketChannel open(String socket, int port) throws IOException {
+        if(socket != null){
+            Path path = Paths.get(socket);
+            Files.deleteIfExists(path);
+            ServerSocketChannel listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            listener.bind(UnixDomainSocketAddress.of(path));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> path.toFile().delete()));
+            return listener;
+        }
+
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return listener;
+    }
+
+    // Connects to a server opened by open
+    static SocketChannel connect(String socket, int port) throws IOException {
+        if(socket != null){
+            return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        }
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    // Method for warming up every engine thread by searching a fixed board with each algorithm a few times
+    public void warm_up(int threads){
+        long pos = Board.from_string(WARM_UP_BOARD);
+        Future<?>[] pending = new Future<?>[threads];
+
+        for(int t = 0; t < threads; t++){
+            pending[t] = engines.submit(() -> {
+                for(int round = 0; round < 20; round++){
+                    evaluator.evaluate("minimax", pos, 4, 0, null);
+                    evaluator.evaluate("minimax-black", pos, 4, 0, null);
+                    evaluator.evaluate("minimax-improved", pos, 4, 0, null);
+                    evaluator.evaluate("alphabeta", pos, 6, 0, null);
+                }
+            });
+        }
+        for(Future<?> f : pending){
+            try{
+                f.get();
+            } catch(Exception e) {
+                System.err.println("Error: Warm up failed: " + e);
+            }
+        }
+    }
+
+    // Accepts connections until the listening socket is closed, each connection is read by its own thread
+    public void serve(ServerSocketChannel listener) throws IOException {
+        while(true){
+            SocketChannel channel = listener.accept();
+            Thread reader = new Thread(() -> new Connection(new LineChannel(channel)).run(), "eval-connection");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    public void shutdown(){
+        engines.shutdownNow();
+        timers.shutdownNow();
+    }
+
+    // State of one client connection and its requests in flight
+    class Connection{
+        private final LineChannel channel;
+        private final Map<String, Request> inFlight = new ConcurrentHashMap<String, Request>();
+
+        Connection(LineChannel channel){
+            this.channel = channel;
+        }
+
+        void run(){
+            try(LineChannel c = channel){
+                while(true){
+                    String line;
+                    try{
+                        line = c.read_line();
+                    } catch(LineChannel.LineTooLongException e) {
+                        send("- ERROR Line too long");
+                        continue;
+                    }
+                    if(line == null){
+                        break;
+                    }
+                    line = line.trim();
+                    if(line.isEmpty()){
+                        continue;
+                    }
+                    if(line.equals("QUIT")){
+                        break;
+                    }
+                    handle(line.split("\\s+"));
+                }
+            } catch(IOException e) {
+                // The client went away, nothing is left to answer
+            }
+
+            // Requests of a closed connection are dropped
+            for(Request r : inFlight.values()){
+                if(r.answered.compareAndSet(false, true)){
+                    r.cancel();
+                }
+            }
+            inFlight.clear();
+        }
+
+        // Method for handling a single line of the protocol
+        private void handle(String[] words){
+            if(words[0].equals("PING")){
+                send("PONG");
+                return;
+            }
+            if(words[0].equals("CANCEL")){
+                Request r = words.length == 2 ? inFlight.get(words[1]) : null;
+                if(r == null){
+                    send((words.length == 2 ? words[1] : "-") + " ERROR Unknown request");
+                } else {
+                    finish(r, "CANCELLED");
+                }
+                return;
+            }
+
+            String id = words[0];
+            if(words.length < 4 || words.length > 5){
+                send(id + " ERROR Expected <id> <algorithm> <depth> <board> [<timeout_ms>]");
+                return;
+            }
+            if(!Evaluator.is_algorithm(words[1])){
+                send(id + " ERROR Unknown algorithm: " + words[1]);
+                return;
+            }
+            if(words[3].length() != Board.SIZE){
+                send(id + " ERROR Invalid board: " + words[3]);
+                return;
+            }
+
+            Request r;
+            try{
+                int depth = Integer.parseInt(words[2]);
+                long timeout = words.length == 5 ? Long.parseLong(words[4]) : 0;
+                if(depth < 0 || timeout < 0){
+                    throw new NumberFormatException();
+                }
+                r = new Request(id, words[1], depth, Board.from_string(words[3]), timeout);
+            } catch(NumberFormatException e) {
+                send(id + " ERROR Invalid depth or timeout");
+                return;
+            }
+            if(r.depth > maxDepth){
+                send(id + " ERROR Depth above the maximum of " + maxDepth);
+                return;
+            }
+            if(inFlight.putIfAbsent(id, r) != null){
+                send(id + " ERROR Duplicate request id");
+                return;
+            }
+
+            r.future = engines.submit(() -> evaluate(r));
+            if(r.timeoutMillis > 0){
+                r.timer = timers.schedule(() -> expire(r), r.timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // Runs the search of a request on an engine thread
+        private void evaluate(Request r){
+            r.running = true;
+            if(r.answered.get()){
+                return;
+            }
+
+            long budget = 0;
+            if(r.timeoutMillis > 0){
+                budget = (r.deadline - System.nanoTime()) / 1_000_000L;
+                if(budget <= 0){
+                    finish(r, "TIMEOUT");
+                    return;
+                }
+            }
+
+            try{
+                Evaluator.Result result = evaluator.evaluate(r.algorithm, r.position, r.depth, budget, r.answered::get);
+                if(result.isCancelled()){
+                    finish(r, "TIMEOUT");
+                } else {
+                    finish(r, "OK " + Board.to_string(result.getPosition()) + " " + result.getEstimate() + " " + result.getNodes());
+                }
+            } catch(RuntimeException e) {
+                finish(r, "ERROR " + e);
+            }
+        }
+
+        // Called when the timeout of a request expires
+        // A running alphabeta search watches its own deadline, everything else is answered here
+        private void expire(Request r){
+            if(r.running && r.algorithm.equals("alphabeta")){
+                return;
+            }
+            finish(r, "TIMEOUT");
+        }
+
+        // Sends the only reply of a request and stops whatever is left of its work
+        private void finish(Request r, String reply){
+            if(!r.answered.compareAndSet(false, true)){
+                return;
+            }
+            inFlight.remove(r.id, r);
+            r.cancel();
+            send(r.id + " " + reply);
+        }
+
+        private void send(String line){
+            try{
+                channel.write_line(line);
+            } catch(IOException e) {
+                // The reader thread notices the closed connection and drops its requests
+            }
+        }
+    }
+
+    // A request in flight, answered is set exactly once and is also polled by the search to stop early
+    static class Request{
+        final String id;
+        final String algorithm;
+        final int depth;
+        final long position;
+        final long timeoutMillis;
+        final long deadline;
+        final AtomicBoolean answered = new AtomicBoolean();
+        volatile boolean running;
+        volatile Future<?> future;
+        volatile ScheduledFuture<?> timer;
+
+        Request(String id, String algorithm, int depth, long position, long timeoutMillis){
+            this.id = id;
+            this.algorithm = algorithm;
+            this.depth = depth;
+            this.position = position;
+            this.timeoutMillis = timeoutMillis;
+            this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        }
+
+        // Removes the search from the queue if it has not started yet and drops the timer
+        void cancel(){
+            if(future != null){
+                future.cancel(false);
+            }
+            if(timer != null){
+                timer.cancel(false);
+            }
+        }
+    }
+
+    // Line oriented reading and writing on a socket channel
+    // Reads and writes go straight to the channel, which allows one thread to block on a read while others write.
+    // Lines are at most MAX_LINE characters, so a peer that never sends a newline cannot fill the heap.
+    static class LineChannel implements Closeable {
+        // Longest line accepted, a request is about 40 characters
+        static final int MAX_LINE = 256;
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(8192).flip();
+        private final StringBuilder line = new StringBuilder();
+
+        LineChannel(SocketChannel channel){
+            this.channel = channel;
+        }
+
+        // Returns the next line without its line terminator, or null at the end of the stream
+        // A line longer than MAX_LINE is skipped up to its newline and reported by a LineTooLongException
+        String read_line() throws IOException {
+            line.setLength(0);
+            boolean tooLong = false;
+            while(true){
+                while(in.hasRemaining()){
+                    char c = (char) in.get();
+                    if(c == '\n'){
+                        if(tooLong){
+                            throw new LineTooLongException();
+                        }
+                        return line.toString();
+                    }
+                    if(c != '\r' && !tooLong){
+                        if(line.length() == MAX_LINE){
+                            tooLong = true;
+                            line.setLength(0);
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+
+                in.clear();
+                int n = channel.read(in);
+                in.flip();
+                if(n < 0){
+                    return line.length() > 0 ? line.toString() : null;
+                }
+            }
+        }
+
+        synchronized void write_line(String s) throws IOException {
+            ByteBuffer out = ByteBuffer.wrap((s + "\n").getBytes(StandardCharsets.US_ASCII));
+            while(out.hasRemaining()){
+                channel.write(out);
+            }
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        // Thrown by read_line for a line longer than MAX_LINE, the channel can still be read after it
+        static class LineTooLongException extends IOException {
+            private static final long serialVersionUID = 1L;
+
+            LineTooLongException(){
+                super("Line too long");
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.function.BooleanSupplier;
+
+// Runs one of the engines on a single board, shared by the batch mode and the evaluation server
+// Each thread keeps its own AlphaBeta search state and transposition table, so a long running process keeps them
+// warm between requests. Every request starts a new table generation and fresh move ordering, which makes the result
+// identical to a single command line run of the engine.
+public class Evaluator {
+    private final ThreadLocal<AlphaBeta.SearchContext> searches;
+
+    public Evaluator(int ttMegabytes){
+        this.searches = ThreadLocal.withInitial(() -> {
+            AlphaBeta.SearchContext search = new AlphaBeta.SearchContext();
+            search.tt = ttMegabytes > 0 ? new TranspositionTable(ttMegabytes) : null;
+            return search;
+        });
+    }
+
+    // Returns true if name is one of the algorithms accepted by evaluate
+    public static boolean is_algorithm(String name){
+        switch(name){
+            case "minimax":
+            case "minimax-black":
+            case "minimax-improved":
+            case "alphabeta":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Method for evaluating a board with White to move (Black for minimax-black)
+    // For alphabeta a positive timeMillis turns depth into a cap for an iterative deepening search that returns the
+    // best move found in time. The minimax engines always search to the full depth. Every engine polls stop so the
+    // request can be cancelled, a minimax search that is stopped returns no move.
+    public Result evaluate(String algorithm, long pos, int depth, long timeMillis, BooleanSupplier stop){
+        SearchStats stats = new SearchStats();
+        Result result = new Result();
+
+        switch(algorithm){
+            case "minimax":
+            case "minimax-black": {
+                MiniMax.GameCalculations game = new MiniMax.GameCalculations();
+                game.stop = stop;
+                MiniMax.Move move = MiniMax.evaluate_moves_first(game, pos, stats, depth, algorithm.equals("minimax"));
+                result.cancelled = game.aborted;
+                result.position = move.getPosition();
+                result.estimate = move.getEstimate();
+                break;
+            }
+            case "minimax-improved": {
+                MiniMaxImproved.GameCalculations game = new MiniMaxImproved.GameCalculations();
+                game.stop = stop;
+                MiniMaxImproved.Move move = MiniMaxImproved.evaluate_moves_first(game, pos, stats, depth);
+                result.cancelled = game.aborted;
+                result.position = move.getPosition();
+                result.estimate = move.getEstimate();
+                break;
+            }
+            case "alphabeta": {
+                AlphaBeta.SearchContext search = searches.get();
+                if(search.tt != null){
+                    search.tt.new_search();
+                }
+                search.ordering = new MoveOrdering(true, true, true);
+                search.stop = stop;
+                search.aborted = false;
+                search.deadline = Long.MAX_VALUE;
+
+                AlphaBeta.ABMove move;
+                if(timeMillis > 0){
+                    move = AlphaBeta.iterative_deepening(new AlphaBeta.GameCalculations(), pos, stats, search, depth, timeMillis);
+                } else {
+                    move = AlphaBeta.evaluate_moves_first(new AlphaBeta.GameCalculations(), pos, stats, search, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+                }
+                result.cancelled = move == null || (timeMillis <= 0 && search.aborted);
+                search.stop = null;
+                if(move != null){
+                    result.position = move.getPosition();
+                    result.estimate = move.getEstimate();
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+
+        result.nodes = stats.getPositionsEvaluated();
+        return result;
+    }
+
+    // Outcome of one evaluation
+    static class Result{
+        long position;
+        int estimate;
+        long nodes;
+        // True if the search was stopped before it produced a move
+        boolean cancelled;
+
+        public long getPosition(){
+            return position;
+        }
+
+        public int getEstimate(){
+            return estimate;
+        }
+
+        public long getNodes(){
+            return nodes;
+        }
+
+        public boolean isCancelled(){
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+// Lazy SMP parallel search
+// Every thread runs its own iterative deepening alpha beta search on the same root position. The threads never
+// split the tree, they only communicate through the shared lock-free transposition table, so results found by one
+// thread cut off the search of the others. To keep the threads from searching the same nodes in lock step, odd
+// numbered helpers start one ply deeper and every helper searches a different root move first.
+// The search stops when any thread completes the depth cap or the time budget runs out, and the result of the
+// deepest completed iteration is returned.
+public class LazySmp {
+    private final AlphaBeta.GameCalculations game;
+    private final SearchStats stats;
+    private final Worker[] workers;
+    private volatile boolean stopped;
+    private Worker bestWorker;
+
+    public LazySmp(int threads, AlphaBeta.GameCalculations game, SearchStats stats, TranspositionTable tt, String ordering){
+        this.game = game;
+        this.stats = stats;
+        this.workers = new Worker[threads];
+
+        for(int id = 0; id < threads; id++){
+            workers[id] = new Worker(id);
+            workers[id].search.tt = tt;
+            workers[id].search.ordering = MoveOrdering.parse(ordering);
+        }
+    }
+
+    // Searches the position with White to move until maxDepth is completed or timeMillis expires (0 for no budget)
+    public AlphaBeta.ABMove search(long pos, int maxDepth, long timeMillis){
+        long deadline = timeMillis > 0 ? System.nanoTime() + timeMillis * 1_000_000L : Long.MAX_VALUE;
+        Thread[] threads = new Thread[workers.length];
+
+        stopped = false;
+        for(int id = 0; id < workers.length; id++){
+            Worker w = workers[id];
+            threads[id] = new Thread(() -> w.run(pos, maxDepth, deadline), "lazy-smp-" + id);
+            threads[id].start();
+        }
+        for(Thread thread : threads){
+            try{
+                thread.join();
+            } catch(InterruptedException e) {
+                stopped = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Take the deepest completed iteration, the main thread wins ties
+        Worker best = workers[0];
+        for(Worker w : workers){
+            if(w.best != null && (best.best == null || w.search.completedDepth > best.search.completedDepth)){
+                best = w;
+            }
+        }
+        bestWorker = best;
+        return best.best;
+    }
+
+    // Returns the best line of the iteration returned by search
+    public int[] principal_variation(){
+        return bestWorker.search.principalVariation;
+    }
+
+    // Returns the deepest iteration completed by any thread
+    public int completed_depth(){
+        int depth = 0;
+        for(Worker w : workers){
+            depth = Math.max(depth, w.search.completedDepth);
+        }
+        return depth;
+    }
+
+    // Method for printing the number of nodes searched by each thread
+    public void print_thread_nodes(){
+        for(Worker w : workers){
+            System.out.println("Thread " + w.id + " nodes: " + w.search.nodes + " (completed depth " + w.search.completedDepth + ")");
+        }
+    }
+
+    // Per thread search state and iterative deepening loop
+    class Worker{
+        final int id;
+        final AlphaBeta.SearchContext search = new AlphaBeta.SearchContext();
+        AlphaBeta.ABMove best;
+
+        Worker(int id){
+            this.id = id;
+        }
+
+        void run(long pos, int maxDepth, long deadline){
+            // Helpers start with a different root move and odd numbered helpers one ply deeper
+            int bestMove = id == 0 ? -1 : nth_piece(Board.white_pieces(pos), id);
+            int depth = Math.min(1 + (id & 1), maxDepth);
+
+            for(; depth <= maxDepth && (!stopped || (id == 0 && best == null)); depth++){
+                // The main thread always completes its first iteration so there is a move to return
+                search.deadline = id == 0 && best == null ? Long.MAX_VALUE : deadline;
+                search.stop = id == 0 && best == null ? null : () -> stopped;
+                search.bestMove = -1;
+
+                AlphaBeta.ABMove evaluation = AlphaBeta.evaluate_moves_first(game, pos, stats, search, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, bestMove);
+                if(search.aborted){
+                    break;
+                }
+
+                best = evaluation;
+                bestMove = search.bestMove;
+                search.completedDepth = depth;
+
+                // Stop early if the game is already decided
+                if(bestMove == -1){
+                    break;
+                }
+            }
+
+            // The first thread to finish the depth cap or to run out of time stops all others
+            stopped = true;
+        }
+    }
+
+    // Returns the index of the nth piece (counting from 0, wrapping around) in a mask of pieces
+    private static int nth_piece(int pieces, int n){
+        if(pieces == 0){
+            return -1;
+        }
+
+        n %= Integer.bitCount(pieces);
+        for(; n > 0; n--){
+            pieces &= pieces - 1;
+        }
+        return Integer.numberOfTrailingZeros(pieces);
+    }
+}
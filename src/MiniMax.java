@@ -2,29 +2,46 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.FileWriter;
-import java.util.Arrays;
 import java.util.Scanner;
-import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
 
 public class MiniMax {
+    private static final String USAGE = "Usage: java MiniMax <input_file> <output_file> <depth> [--tablebase <tablebase_file>] [--stats-json <file>] [--threads <count>] [--split-depth <depth>]";
+
     public static void main(String[] args) {
-        if(args.length != 3){
-            System.err.println("Usage: java MiniMax <input_file> <output_file> <depth>");
+        if(args.length < 3){
+            System.err.println(USAGE);
             return;
         }
 
-        // Read position info from the input file and save each board position in an array
+        // Read the optional settings that follow the depth
+        String tablebaseFile = null;
+        String statsFile = null;
+        int threads = 1;
+        int splitDepth = 6;
+        for(int a = 3; a < args.length; a++){
+            if(args[a].equals("--tablebase") && a + 1 < args.length){
+                tablebaseFile = args[++a];
+            } else if(args[a].equals("--stats-json") && a + 1 < args.length){
+                statsFile = args[++a];
+            } else if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--split-depth") && a + 1 < args.length){
+                splitDepth = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        // Read position info from the input file and pack the board into a long
         File input = new File(args[0]);
-        String[] position = new String[16];
+        long position;
 
         try{
             // If input file exists, read the file
             Scanner inputReader = new Scanner(input);
-            String temp = inputReader.nextLine();
-
-            for(int i = 0; i < position.length; i++){
-                position[i] = "" + temp.charAt(i);
-            }
+            position = Board.from_string(inputReader.nextLine());
             inputReader.close();
         } catch(FileNotFoundException e) {
             // If input file doesn't exist, return an error message and exit
@@ -32,23 +49,48 @@ public class MiniMax {
             return;
         }
 
-        // Lists for storing the possible moves and their corresponding static estimation
-        ArrayList<Move> moves = new ArrayList<Move>();
+        // Counters for the positions evaluated during the search
+        SearchStats stats = new SearchStats();
         GameCalculations game = new GameCalculations();
+        if(tablebaseFile != null){
+            try{
+                game.tablebase = Tablebase.open(tablebaseFile);
+            } catch(IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                return;
+            }
+        }
+
+        SearchReport report = statsFile != null ? new SearchReport("minimax", position, Integer.parseInt(args[2]), stats) : null;
 
         // Loop through array of positions and generate all possible moves for White for a given depth
-        Move evaluation = evaluate_moves_first(game, position, moves, Integer.parseInt(args[2]));
+        // With more than one thread the tree is split into tasks down to the split depth, the result is the same
+        Move evaluation;
+        if(threads > 1){
+            ParallelMiniMax search = new ParallelMiniMax(threads, splitDepth);
+            evaluation = search.evaluate_moves_first(game, position, stats, Integer.parseInt(args[2]), true);
+            search.shutdown();
+        } else {
+            evaluation = evaluate_moves_first(game, position, stats, Integer.parseInt(args[2]));
+        }
 
         // Output final game statistics
-        String outStr = "";
-        for(int i = 0; i < evaluation.getPosition().length; i++){
-            outStr += evaluation.getPosition()[i];
-        }
+        String outStr = Board.to_string(evaluation.getPosition());
         System.out.print("Board Position: " + outStr);
-        System.out.println("\nPositions evaluated by static estimation: " + moves.size());
+        System.out.println("\nPositions evaluated by static estimation: " + stats.getPositionsEvaluated());
         System.out.println("MINIMAX estimate: " + evaluation.getEstimate());
+        if(game.tablebase != null){
+            System.out.println("Tablebase hits: " + stats.getTablebaseHits());
+        }
 
-        // Write to output file
+        // Write the stats and the output file
+        if(report != null){
+            try{
+                report.write(statsFile, stats, null, evaluation.getPosition(), evaluation.getEstimate());
+            } catch(IOException e) {
+                System.err.println("Error: Failed to write stats file");
+            }
+        }
         try{
             FileWriter outputWriter = new FileWriter(args[1]);
             outputWriter.write(outStr);
@@ -59,17 +101,29 @@ public class MiniMax {
     }
 
     // Recursive method for generating all moves at a depth specified in the parameters
-    public static Move evaluate_moves_first(GameCalculations game, String[] pos, ArrayList<Move> moves, int depth) {
-        ArrayList<Move> possibleMoves = new ArrayList<Move>();
+    public static Move evaluate_moves_first(GameCalculations game, long pos, SearchStats stats, int depth) {
+        return evaluate_moves_first(game, pos, stats, depth, true);
+    }
+
+    // Negamax search shared by MiniMax (White to move) and MiniMaxBlack (Black to move)
+    // Returns the best child position for the side to move, its estimate is from White's point of view like the static estimate
+    // Only the best child position is kept here, the search below the root works on scores
+    public static Move evaluate_moves_first(GameCalculations game, long pos, SearchStats stats, int depth, boolean white) {
+        SearchStats.Iteration iteration = stats.begin_iteration(white ? "minimax" : "minimax-black", depth);
+        Move move = search_root(game, pos, stats, depth, white);
+        stats.end_iteration(iteration, move.getEstimate(), !game.aborted);
+        return move;
+    }
+
+    private static Move search_root(GameCalculations game, long pos, SearchStats stats, int depth, boolean white) {
         int bestVal;
-        int min_max = 0;
-        int index = 0;
+        long bestPos = pos;
         Move temp = new Move();
 
         if(depth == 0) {
             // Return the position and its estimate if the depth is 0
             temp.setMove(pos, game.estimate_position(pos));
-            moves.add(temp);
+            stats.leaf(0);
             return temp;
         }
 
@@ -77,136 +131,90 @@ public class MiniMax {
         int estimate = game.estimate_position(pos);
         if(estimate == 100 || estimate == -100){
             temp.setMove(pos, estimate);
-            moves.add(temp);
+            stats.terminal_win(0);
             return temp;
         }
+        stats.interior_node(0);
 
         bestVal = -1000;
 
-        for (int i = 0; i < pos.length; i++) {
-            if (pos[i].equals("W") || pos[i].equals("w")) {
-                temp = evaluate_moves(game, game.generate_move(pos, i), moves, depth - 1, false);
-                possibleMoves.add(temp);
+        // For each piece of the side to move, evaluate the next move from the point of view of that side
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        for (; pieces != 0; pieces &= pieces - 1) {
+            long child = game.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white);
+            int value = -evaluate_moves(game, child, stats, depth - 1, 1, !white);
 
-                if (bestVal < temp.getEstimate()) {
-                    bestVal = temp.getEstimate();
-                    min_max = index;
-                }
-                index++;
+            if (bestVal < value) {
+                bestVal = value;
+                bestPos = child;
             }
         }
 
-        return possibleMoves.get(min_max);
+        temp.setMove(bestPos, white ? bestVal : -bestVal);
+        return temp;
     }
 
     // Recursive helper method of evaluate_moves_first
-    public static Move evaluate_moves(GameCalculations game, String[] pos, ArrayList<Move> moves, int depth, boolean max) {
-        ArrayList<Move> possibleMoves = new ArrayList<Move>();
+    // Returns the estimate of pos from the point of view of the side to move, so both sides maximize
+    public static int evaluate_moves(GameCalculations game, long pos, SearchStats stats, int depth, int ply, boolean white) {
         int bestVal;
-        int min_max = 0;
-        int index = 0;
-        Move temp = new Move();
 
         if(depth == 0) {
-            // Return the position and its estimate if the depth is 0
-            temp.setMove(pos, game.estimate_position(pos));
-            moves.add(temp);
-            return temp;
+            // Return the estimate of the position if the depth is 0
+            stats.leaf(ply);
+            int estimate = game.estimate_position(pos);
+            return white ? estimate : -estimate;
         }
 
-        // Check if White or Black has the won the game and return the position and estimate if true
+        // Check if White or Black has the won the game and return the estimate if true
         int estimate = game.estimate_position(pos);
         if(estimate == 100 || estimate == -100){
-            temp.setMove(pos, estimate);
-            moves.add(temp);
-            return temp;
+            stats.terminal_win(ply);
+            return white ? estimate : -estimate;
         }
 
-        if (max) {
-            // Code for the maximizer (White's turn)
-            bestVal = Integer.MIN_VALUE;
-
-            // For each White piece on the board, evaluate the next move
-            for (int i = 0; i < pos.length; i++) {
-                if (pos[i].equals("W") || pos[i].equals("w")) {
-                    temp = evaluate_moves(game, game.generate_move(pos, i), moves, depth - 1, false);
-                    possibleMoves.add(temp);
-
-                    if (bestVal < temp.getEstimate()) {
-                        bestVal = temp.getEstimate();
-                        min_max = index;
-                    }
-                    index++;
-                }
-            }
-
-            // Amongst all moves generated, return the position with the highest estimate
-            temp.setMove(pos, possibleMoves.get(min_max).getEstimate());
-            return temp;
-        } else {
-            // Code for the minimizer (Black's turn)
-            bestVal = Integer.MAX_VALUE;
-
-            // For each Black piece on the board, evaluate the next move
-            for (int i = 0; i < pos.length; i++) {
-                if (pos[i].equals("B") || pos[i].equals("b")) {
-                    temp = evaluate_moves(game, flip_position(game.generate_move(flip_position(pos), (i - 15) * -1)), moves, depth - 1, true);
-                    possibleMoves.add(temp);
-
-                    if (bestVal > temp.getEstimate()) {
-                        bestVal = temp.getEstimate();
-                        min_max = index;
-                    }
-                    index++;
-
-                }
+        // A position in the endgame tablebase is not searched, its game theoretic value is known
+        if(game.tablebase != null){
+            int score = game.tablebase.score(pos, white);
+            if(score != Tablebase.NONE){
+                stats.tablebase_hit();
+                return score;
             }
-
-            // Amongst all moves generated, return the position with the lowest estimate
-            temp.setMove(pos, possibleMoves.get(min_max).getEstimate());
-            return temp;
         }
-    }
 
-    // Method for reversing a position to make a move for Black
-    public static String[] flip_position(String[] pos){
-        String[] reverse = Arrays.copyOf(pos, pos.length);
-        String temp;
-        int len = reverse.length;
-
-        // Reverse the position string
-        for(int i = 0; i < len/2; i++){
-            temp = reverse[i];
-            reverse[i] = reverse[len - 1 - i];
-            reverse[len - 1 - i] = temp;
+        // A stopped search unwinds at once, its result is thrown away
+        if(game.stopped()){
+            return 0;
         }
+        stats.interior_node(ply);
 
-        // Replace all Black piece with White pieces and all White pieces with Black pieces
-        for(int i = 0; i < len; i++){
-            if(reverse[i].equals("W")){
-                reverse[i] = "B";
-            } else if(reverse[i].equals("w")){
-                reverse[i] = "b";
-            } else if(reverse[i].equals("B")){
-                reverse[i] = "W";
-            } else if(reverse[i].equals("b")){
-                reverse[i] = "w";
+        bestVal = Integer.MIN_VALUE;
+
+        // For each piece of the side to move, evaluate the next move
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        for (; pieces != 0; pieces &= pieces - 1) {
+            long child = game.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white);
+            int value = -evaluate_moves(game, child, stats, depth - 1, ply + 1, !white);
+
+            if (bestVal < value) {
+                bestVal = value;
             }
         }
 
-        return reverse;
+        // Amongst all moves generated, return the highest estimate for the side to move
+        return bestVal;
     }
 
     static class Move{
-        String[] position;
+        long position;
         int estimate;
 
-        public void setMove(String[] position, int estimate){
+        public void setMove(long position, int estimate){
             this.position = position;
             this.estimate = estimate;
         }
 
-        public String[] getPosition(){
+        public long getPosition(){
             return position;
         }
 
@@ -217,82 +225,47 @@ public class MiniMax {
 
     // Subclass containing methods for the Move Generator, Static Estimator, and determining if White or Black has won
     static class GameCalculations {
-        // Method for generating the move of a single White piece on the game board
-        public String[] generate_move(String[] board, int i){
-            String[] P = Arrays.copyOf(board, board.length);
-
-            if(i == 15){
-                // if White is at the right end of the board, jump out
-                P[i] = "x";
-            } else {
-                // if there are no free spaces from i to the last position, jump out of the board
-                for(int j = i + 1; j < P.length; j++){
-                    if(j == 15 && !P[j].equals("x")) {
-                        // if no free space on the board, jump out of the game board
-                        P[i] = "x";
-                        break;
-                    } else if(P[j].equals("x")) {
-                        // if a free space is found, advance/jump to it
-                        P[j] = P[i];
-                        P[i] = "x";
-
-                        // if White jumps over a single Black piece, move the Black piece to the rightmost free position
-                        if((j - i == 2) && (P[j - 1].equals("b") || P[j - 1].equals("B"))){
-                            for(int k = P.length - 1; k >= 0; k--){
-                                if(P[k].equals("x")){
-                                    if(k != j - 2){
-                                        P[k] = P[j - 1];
-                                        P[j - 1] = "x";
-                                    }
-                                    break;
-                                }
-                            }
-                        }
-
-                        break;
-                    }
-                }
+        // Optional endgame tablebase probed by the search below the root
+        Tablebase tablebase;
+        // Optional condition polled by the search, used by the evaluation server to stop cancelled requests
+        // The parallel search shares one instance between its threads and never sets it
+        BooleanSupplier stop;
+        boolean aborted;
+        private int polls;
+
+        // Returns true once stop holds, it is only checked every 1024 positions
+        public boolean stopped(){
+            if(stop != null && !aborted && (++polls & 1023) == 0 && stop.getAsBoolean()){
+                aborted = true;
             }
+            return aborted;
+        }
+
+        // Method for generating the move of a single White piece on the game board
+        public long generate_move(long board, int i){
+            return Board.generate_move(board, i);
+        }
 
-            return P;
+        // Method for generating the move of the piece on cell i for White or Black
+        public long generate_move(long board, int i, boolean white){
+            return Board.generate_move(board, i, white);
         }
 
         // Method for calculating the static estimate of a position
         // First checks if White or Black has won and returns 100 or -100 respectively if true
         // Otherwise, calculates (i + j - 15), where i is the index of W and j is the index of B, and return it
-        public int estimate_position(String[] P){
-            int i = white_win(P);
-            int j = black_win(P);
-
-            if(i == -1){
-                return 100;
-            } else if(j == -1){
-                return -100;
-            } else {
-                return (i + j - 15);
-            }
+        public int estimate_position(long P){
+            return Board.estimate_position(P);
         }
 
         // Method for checking if White has won the game by checking if "W" is present on the board
-        public int white_win(String[] P){
-            for(int i = 0; i < P.length; i++){
-                if(P[i].equals("W")){
-                    return i;
-                }
-            }
-
-            return -1;
+        public int white_win(long P){
+            return Board.white_win(P);
         }
 
         // Method for checking if Black has won the game by checking if "B" is present on the board
-        public int black_win(String[] P){
-            for(int i = 0; i < P.length; i++){
-                if(P[i].equals("B")){
-                    return i;
-                }
-            }
-
-            return -1;
+        public int black_win(long P){
+            return Board.black_win(P);
         }
     }
 }
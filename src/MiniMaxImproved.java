@@ -2,29 +2,43 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.FileWriter;
-import java.util.Arrays;
 import java.util.Scanner;
-import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
 
 public class MiniMaxImproved {
+    private static final String USAGE = "Usage: java MiniMaxImproved <input_file> <output_file> <depth> [--stats-json <file>] [--threads <count>] [--split-depth <depth>]";
+
     public static void main(String[] args) {
-        if(args.length != 3){
-            System.err.println("Usage: java MiniMax <input_file> <output_file> <depth>");
+        if(args.length < 3){
+            System.err.println(USAGE);
             return;
         }
 
-        // Read position info from the input file and save each board position in an array
+        // Read the optional settings that follow the depth
+        String statsFile = null;
+        int threads = 1;
+        int splitDepth = 6;
+        for(int a = 3; a < args.length; a++){
+            if(args[a].equals("--stats-json") && a + 1 < args.length){
+                statsFile = args[++a];
+            } else if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--split-depth") && a + 1 < args.length){
+                splitDepth = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        // Read position info from the input file and pack the board into a long
         File input = new File(args[0]);
-        String[] position = new String[16];
+        long position;
 
         try{
             // If input file exists, read the file
             Scanner inputReader = new Scanner(input);
-            String temp = inputReader.nextLine();
-
-            for(int i = 0; i < position.length; i++){
-                position[i] = "" + temp.charAt(i);
-            }
+            position = Board.from_string(inputReader.nextLine());
             inputReader.close();
         } catch(FileNotFoundException e) {
             // If input file doesn't exist, return an error message and exit
@@ -32,23 +46,37 @@ public class MiniMaxImproved {
             return;
         }
 
-        // Lists for storing the possible moves and their corresponding static estimation
-        ArrayList<Move> moves = new ArrayList<Move>();
+        // Counters for the positions evaluated during the search
+        SearchStats stats = new SearchStats();
         GameCalculations game = new GameCalculations();
 
+        SearchReport report = statsFile != null ? new SearchReport("minimax-improved", position, Integer.parseInt(args[2]), stats) : null;
+
         // Loop through array of positions and generate all possible moves for White for a given depth
-        Move evaluation = evaluate_moves_first(game, position, moves, Integer.parseInt(args[2]));
+        // With more than one thread the tree is split into tasks down to the split depth, the result is the same
+        Move evaluation;
+        if(threads > 1){
+            ParallelMiniMax search = new ParallelMiniMax(threads, splitDepth);
+            evaluation = search.evaluate_moves_first(game, position, stats, Integer.parseInt(args[2]));
+            search.shutdown();
+        } else {
+            evaluation = evaluate_moves_first(game, position, stats, Integer.parseInt(args[2]));
+        }
 
         // Output final game statistics
-        String outStr = "";
-        for(int i = 0; i < evaluation.getPosition().length; i++){
-            outStr += evaluation.getPosition()[i];
-        }
+        String outStr = Board.to_string(evaluation.getPosition());
         System.out.print("Board Position: " + outStr);
-        System.out.println("\nPositions evaluated by static estimation: " + moves.size());
+        System.out.println("\nPositions evaluated by static estimation: " + stats.getPositionsEvaluated());
         System.out.println("MINIMAX-Improved estimate: " + evaluation.getEstimate());
 
-        // Write to output file
+        // Write the stats and the output file
+        if(report != null){
+            try{
+                report.write(statsFile, stats, null, evaluation.getPosition(), evaluation.getEstimate());
+            } catch(IOException e) {
+                System.err.println("Error: Failed to write stats file");
+            }
+        }
         try{
             FileWriter outputWriter = new FileWriter(args[1]);
             outputWriter.write(outStr);
@@ -59,154 +87,117 @@ public class MiniMaxImproved {
     }
 
     // Recursive method for generating all moves at a depth specified in the parameters
-    public static Move evaluate_moves_first(GameCalculations game, String[] pos, ArrayList<Move> moves, int depth) {
-        ArrayList<Move> possibleMoves = new ArrayList<Move>();
+    // Only the best child position is kept here, the search below the root works on scores
+    // The pawn score of the root is computed once, below the root it is updated with every move
+    public static Move evaluate_moves_first(GameCalculations game, long pos, SearchStats stats, int depth) {
+        SearchStats.Iteration iteration = stats.begin_iteration("minimax-improved", depth);
+        Move move = search_root(game, pos, stats, depth);
+        stats.end_iteration(iteration, move.getEstimate(), !game.aborted);
+        return move;
+    }
+
+    private static Move search_root(GameCalculations game, long pos, SearchStats stats, int depth) {
         int bestVal;
-        int min_max = 0;
-        int index = 0;
+        long bestPos = pos;
         Move temp = new Move();
+        int pawns = game.pawn_score(pos);
 
         if(depth == 0) {
             // Return the position and its estimate if the depth is 0
-            temp.setMove(pos, game.estimate_position(pos));
-            moves.add(temp);
+            temp.setMove(pos, game.estimate_position(pos, pawns));
+            stats.leaf(0);
             return temp;
         }
 
         // Check if White or Black has the won the game and return the position and estimate if true
-        int estimate = game.estimate_position(pos);
+        int estimate = game.estimate_position(pos, pawns);
         if(estimate == 100 || estimate == -100){
             temp.setMove(pos, estimate);
-            moves.add(temp);
+            stats.terminal_win(0);
             return temp;
         }
+        stats.interior_node(0);
 
         bestVal = -1000;
 
-        for (int i = 0; i < pos.length; i++) {
-            if (pos[i].equals("W") || pos[i].equals("w")) {
-                temp = evaluate_moves(game, game.generate_move(pos, i), moves, depth - 1, false);
-                possibleMoves.add(temp);
+        for (int pieces = Board.white_pieces(pos); pieces != 0; pieces &= pieces - 1) {
+            long child = game.generate_move(pos, Integer.numberOfTrailingZeros(pieces));
+            int value = evaluate_moves(game, child, game.update_pawn_score(pos, child, pawns), stats, depth - 1, 1, false);
 
-                if (bestVal < temp.getEstimate()) {
-                    bestVal = temp.getEstimate();
-                    min_max = index;
-                }
-                index++;
+            if (bestVal < value) {
+                bestVal = value;
+                bestPos = child;
             }
         }
 
-        return possibleMoves.get(min_max);
+        temp.setMove(bestPos, bestVal);
+        return temp;
     }
 
-    // Recursive helper method of evaluate_moves_first
-    public static Move evaluate_moves(GameCalculations game, String[] pos, ArrayList<Move> moves, int depth, boolean max) {
-        ArrayList<Move> possibleMoves = new ArrayList<Move>();
+    // Recursive helper method of evaluate_moves_first, returns the estimate of pos
+    // pawns is the pawn score of pos, see GameCalculations.pawn_score
+    public static int evaluate_moves(GameCalculations game, long pos, int pawns, SearchStats stats, int depth, int ply, boolean max) {
         int bestVal;
-        int min_max = 0;
-        int index = 0;
-        Move temp = new Move();
 
         if(depth == 0) {
-            // Return the position and its estimate if the depth is 0
-            temp.setMove(pos, game.estimate_position(pos));
-            moves.add(temp);
-            return temp;
+            // Return the estimate of the position if the depth is 0
+            stats.leaf(ply);
+            return game.estimate_position(pos, pawns);
         }
 
-        // Check if White or Black has the won the game and return the position and estimate if true
-        int estimate = game.estimate_position(pos);
+        // Check if White or Black has the won the game and return the estimate if true
+        int estimate = game.estimate_position(pos, pawns);
         if(estimate == 100 || estimate == -100){
-            temp.setMove(pos, estimate);
-            moves.add(temp);
-            return temp;
+            stats.terminal_win(ply);
+            return estimate;
+        }
+
+        // A stopped search unwinds at once, its result is thrown away
+        if(game.stopped()){
+            return 0;
         }
+        stats.interior_node(ply);
 
         if (max) {
             // Code for the maximizer (White's turn)
             bestVal = Integer.MIN_VALUE;
 
             // For each White piece on the board, evaluate the next move
-            for (int i = 0; i < pos.length; i++) {
-                if (pos[i].equals("W") || pos[i].equals("w")) {
-                    temp = evaluate_moves(game, game.generate_move(pos, i), moves, depth - 1, false);
-                    possibleMoves.add(temp);
-
-                    if (bestVal < temp.getEstimate()) {
-                        bestVal = temp.getEstimate();
-                        min_max = index;
-                    }
-                    index++;
+            for (int pieces = Board.white_pieces(pos); pieces != 0; pieces &= pieces - 1) {
+                long child = game.generate_move(pos, Integer.numberOfTrailingZeros(pieces));
+                int value = evaluate_moves(game, child, game.update_pawn_score(pos, child, pawns), stats, depth - 1, ply + 1, false);
+                if (bestVal < value) {
+                    bestVal = value;
                 }
             }
-
-            // Amongst all moves generated, return the position with the highest estimate
-            temp.setMove(pos, possibleMoves.get(min_max).getEstimate());
-            return temp;
         } else {
             // Code for the minimizer (Black's turn)
             bestVal = Integer.MAX_VALUE;
 
             // For each Black piece on the board, evaluate the next move
-            for (int i = 0; i < pos.length; i++) {
-                if (pos[i].equals("B") || pos[i].equals("b")) {
-                    temp = evaluate_moves(game, flip_position(game.generate_move(flip_position(pos), (i - 15) * -1)), moves, depth - 1, true);
-                    possibleMoves.add(temp);
-
-                    if (bestVal > temp.getEstimate()) {
-                        bestVal = temp.getEstimate();
-                        min_max = index;
-                    }
-                    index++;
-
+            for (int pieces = Board.black_pieces(pos); pieces != 0; pieces &= pieces - 1) {
+                long child = game.generate_move(pos, Integer.numberOfTrailingZeros(pieces), false);
+                int value = evaluate_moves(game, child, game.update_pawn_score(pos, child, pawns), stats, depth - 1, ply + 1, true);
+                if (bestVal > value) {
+                    bestVal = value;
                 }
             }
-
-            // Amongst all moves generated, return the position with the highest estimate
-            temp.setMove(pos, possibleMoves.get(min_max).getEstimate());
-            return temp;
-        }
-    }
-
-    // Method for reversing a position to make a move for Black
-    public static String[] flip_position(String[] pos){
-        String[] reverse = Arrays.copyOf(pos, pos.length);
-        String temp;
-        int len = reverse.length;
-
-        // Reverse the position string
-        for(int i = 0; i < len/2; i++){
-            temp = reverse[i];
-            reverse[i] = reverse[len - 1 - i];
-            reverse[len - 1 - i] = temp;
-        }
-
-        // Replace all Black piece with White pieces and all White pieces with Black pieces
-        for(int i = 0; i < len; i++){
-            if(reverse[i].equals("W")){
-                reverse[i] = "B";
-            } else if(reverse[i].equals("w")){
-                reverse[i] = "b";
-            } else if(reverse[i].equals("B")){
-                reverse[i] = "W";
-            } else if(reverse[i].equals("b")){
-                reverse[i] = "w";
-            }
         }
 
-        return reverse;
+        // Amongst all moves generated, return the highest estimate for the side to move
+        return bestVal;
     }
 
     static class Move{
-        String[] position;
+        long position;
         int estimate;
 
-        public void setMove(String[] position, int estimate){
+        public void setMove(long position, int estimate){
             this.position = position;
             this.estimate = estimate;
         }
 
-        public String[] getPosition(){
+        public long getPosition(){
             return position;
         }
 
@@ -217,70 +208,40 @@ public class MiniMaxImproved {
 
     // Subclass containing methods for the Move Generator, Static Estimator, and determining if White or Black has won
     static class GameCalculations {
-        // Method for generating the move of a single White piece on the game board
-        public String[] generate_move(String[] board, int i){
-            String[] P = Arrays.copyOf(board, board.length);
-
-            if(i == 15){
-                // if White is at the right end of the board, jump out
-                P[i] = "x";
-            } else {
-                // if there are no free spaces from i to the last position, jump out of the board
-                for(int j = i + 1; j < P.length; j++){
-                    if(j == 15 && !P[j].equals("x")) {
-                        // if no free space on the board, jump out of the game board
-                        P[i] = "x";
-                        break;
-                    } else if(P[j].equals("x")) {
-                        // if a free space is found, advance/jump to it
-                        P[j] = P[i];
-                        P[i] = "x";
-
-                        // if White jumps over a single Black piece, move the Black piece to the rightmost free position
-                        if((j - i == 2) && (P[j - 1].equals("b") || P[j - 1].equals("B"))){
-                            for(int k = P.length - 1; k >= 0; k--){
-                                if(P[k].equals("x")){
-                                    if(k != j - 2){
-                                        P[k] = P[j - 1];
-                                        P[j - 1] = "x";
-                                    }
-                                    break;
-                                }
-                            }
-                        }
-
-                        break;
-                    }
-                }
+        // Optional condition polled by the search, used by the evaluation server to stop cancelled requests
+        // The parallel search shares one instance between its threads and never sets it
+        BooleanSupplier stop;
+        boolean aborted;
+        private int polls;
+
+        // Returns true once stop holds, it is only checked every 1024 positions
+        public boolean stopped(){
+            if(stop != null && !aborted && (++polls & 1023) == 0 && stop.getAsBoolean()){
+                aborted = true;
             }
+            return aborted;
+        }
 
-            return P;
+        // Method for generating the move of a single White piece on the game board
+        public long generate_move(long board, int i){
+            return Board.generate_move(board, i);
+        }
+
+        // Method for generating the move of the piece on cell i for White or Black
+        public long generate_move(long board, int i, boolean white){
+            return Board.generate_move(board, i, white);
         }
 
         // Method for calculating the static estimate of a position
-        public int estimate_position(String[] P){
-            int whiteKingPos = -1;
-            int blackKingPos = -1;
-            int whitePawnVal = 0;
-            int blackPawnVal = 0;
+        public int estimate_position(long P){
+            return estimate_position(P, pawn_score(P));
+        }
 
-            // Assign position and piece type scores
-            for(int i = 0; i < P.length; i++){
-                switch(P[i]){
-                    case "W":
-                        whiteKingPos = i;
-                        break;
-                    case "B":
-                        blackKingPos = i;
-                        break;
-                    case "w":
-                        whitePawnVal += (i * 2);
-                        break;
-                    case "b":
-                        blackPawnVal += ((15 - i) * 2);
-                        break;
-                }
-            }
+        // Method for calculating the static estimate of a position whose pawn score is already known
+        public int estimate_position(long P, int pawns){
+            // The last king on the board decides its position, -1 if the king has left the board
+            int whiteKingPos = 31 - Integer.numberOfLeadingZeros(Board.mask(P, Board.WHITE_KING));
+            int blackKingPos = 31 - Integer.numberOfLeadingZeros(Board.mask(P, Board.BLACK_KING));
 
             // Check if White or Black has won
             if(whiteKingPos == -1){
@@ -294,7 +255,48 @@ public class MiniMaxImproved {
             int positionScore = (whiteKingPos - blackKingPos) * 5;
 
             // Return final estimate
-            return positionScore + (whitePawnVal - blackPawnVal);
+            return positionScore + pawns;
+        }
+
+        // Method for calculating the pawn score of a position, the White pawn values minus the Black pawn values
+        // A White pawn on cell i is worth i * 2 and a Black pawn (15 - i) * 2, so pawns are worth more the further they advanced
+        public int pawn_score(long P){
+            int whitePawnVal = 0;
+            int blackPawnVal = 0;
+
+            // Assign position and piece type scores
+            for(int pawns = Board.mask(P, Board.WHITE_PAWN); pawns != 0; pawns &= pawns - 1){
+                whitePawnVal += (Integer.numberOfTrailingZeros(pawns) * 2);
+            }
+            for(int pawns = Board.mask(P, Board.BLACK_PAWN); pawns != 0; pawns &= pawns - 1){
+                blackPawnVal += ((15 - Integer.numberOfTrailingZeros(pawns)) * 2);
+            }
+
+            return whitePawnVal - blackPawnVal;
+        }
+
+        // Method for updating the pawn score of parent to the pawn score of child, a position one move later
+        // A move changes at most the cell of the moving pawn and of a jumped pawn, so only the changed cells are scored
+        public int update_pawn_score(long parent, long child, int pawns){
+            int whiteBefore = Board.mask(parent, Board.WHITE_PAWN);
+            int whiteAfter = Board.mask(child, Board.WHITE_PAWN);
+            int blackBefore = Board.mask(parent, Board.BLACK_PAWN);
+            int blackAfter = Board.mask(child, Board.BLACK_PAWN);
+
+            for(int cells = whiteBefore & ~whiteAfter; cells != 0; cells &= cells - 1){
+                pawns -= Integer.numberOfTrailingZeros(cells) * 2;
+            }
+            for(int cells = whiteAfter & ~whiteBefore; cells != 0; cells &= cells - 1){
+                pawns += Integer.numberOfTrailingZeros(cells) * 2;
+            }
+            for(int cells = blackBefore & ~blackAfter; cells != 0; cells &= cells - 1){
+                pawns += (15 - Integer.numberOfTrailingZeros(cells)) * 2;
+            }
+            for(int cells = blackAfter & ~blackBefore; cells != 0; cells &= cells - 1){
+                pawns -= (15 - Integer.numberOfTrailingZeros(cells)) * 2;
+            }
+
+            return pawns;
         }
     }
 }
@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+// Orders the moves of a node so the ones most likely to cause a cutoff are searched first
+// A move is identified by the index of the piece that moves. Each heuristic can be switched on or off:
+//   hash     - the best move stored in the transposition table for the position
+//   killers  - the last two moves that caused a cutoff at the same ply
+//   history  - moves that caused cutoffs anywhere in the tree, weighted by the depth of the cutoff
+// Moves not picked by any heuristic keep their board index order.
+public class MoveOrdering {
+    private static final int KILLERS = 2;
+
+    private final boolean useHashMove;
+    private final boolean useKillers;
+    private final boolean useHistory;
+
+    // Killer moves and move lists are indexed by ply, ensure() makes room for them before a search starts
+    private int[][] killers = new int[0][];
+    private int[][] lists = new int[0][];
+    // History scores indexed by side (0 = White, 1 = Black) and the index of the moving piece
+    private final int[][] history = new int[2][Board.SIZE];
+
+    public MoveOrdering(boolean useHashMove, boolean useKillers, boolean useHistory){
+        this.useHashMove = useHashMove;
+        this.useKillers = useKillers;
+        this.useHistory = useHistory;
+    }
+
+    // Method for building an ordering from a comma separated list such as "hash,killers,history" or "none"
+    public static MoveOrdering parse(String spec){
+        boolean hash = false;
+        boolean killers = false;
+        boolean history = false;
+
+        for(String name : spec.split(",")){
+            switch(name){
+                case "hash":
+                    hash = true;
+                    break;
+                case "killers":
+                    killers = true;
+                    break;
+                case "history":
+                    history = true;
+                    break;
+                case "none":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown move ordering: " + name);
+            }
+        }
+
+        return new MoveOrdering(hash, killers, history);
+    }
+
+    // Returns the move list buffer for a ply
+    public int[] list(int ply){
+        return lists[ply];
+    }
+
+    // Method for writing the pieces that can move into list in search order, returns the number of moves
+    public int order(int pieces, boolean white, int ply, int hashMove, int[] list){
+        int count = 0;
+
+        if(useHashMove && hashMove >= 0 && (pieces & (1 << hashMove)) != 0){
+            list[count++] = hashMove;
+            pieces &= ~(1 << hashMove);
+        }
+
+        if(useKillers){
+            for(int k = 0; k < KILLERS; k++){
+                int killer = killers[ply][k];
+                if(killer >= 0 && (pieces & (1 << killer)) != 0){
+                    list[count++] = killer;
+                    pieces &= ~(1 << killer);
+                }
+            }
+        }
+
+        // Remaining moves are sorted by history score, ties keep board order
+        int start = count;
+        int[] scores = history[white ? 0 : 1];
+        for(; pieces != 0; pieces &= pieces - 1){
+            int i = Integer.numberOfTrailingZeros(pieces);
+            int j = count++;
+            while(useHistory && j > start && scores[list[j - 1]] < scores[i]){
+                list[j] = list[j - 1];
+                j--;
+            }
+            list[j] = i;
+        }
+
+        return count;
+    }
+
+    // Method for recording a move that caused a beta cutoff
+    public void cutoff(boolean white, int ply, int move, int depth){
+        if(useKillers && killers[ply][0] != move){
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if(useHistory){
+            history[white ? 0 : 1][move] += depth * depth;
+        }
+    }
+
+    // Method for making room for a search that goes at most plies - 1 plies below the root
+    // Called before a search starts so the search itself never allocates, killer moves of existing plies are kept
+    public void ensure(int plies){
+        if(plies <= lists.length){
+            return;
+        }
+
+        int size = Math.max(plies, lists.length * 2);
+        int[][] newKillers = Arrays.copyOf(killers, size);
+        int[][] newLists = Arrays.copyOf(lists, size);
+        for(int p = lists.length; p < size; p++){
+            newKillers[p] = new int[]{-1, -1};
+            newLists[p] = new int[Board.SIZE];
+        }
+        killers = newKillers;
+        lists = newLists;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Opening book of the positions near the start position, searched offline to a high depth
+// The builder collects every position with White to move that is reached within a number of plies of the start,
+// searches each of them with AlphaBeta and writes the best move and estimate to a binary file sorted by the Zobrist
+// hash of the position. Searches run on --threads worker threads and every result is appended to a journal next to
+// the book as soon as it is known, so a build that is stopped picks up where it left off when it is started again
+// with the same depth. The journal is removed once the book is written.
+// A book file is a header (magic, number of entries) followed by the entries, each a hash and a packed data word:
+//   bits  0-15: estimate from White's point of view
+//   bits 16-23: depth of the search
+//   bits 24-27: index of the White piece to move
+public class OpeningBook {
+    private static final String USAGE = "Usage: java OpeningBook <book_file> <plies> <depth> [--start <board>] [--threads <count>] [--tt-mb <megabytes per thread>]";
+
+    private static final String START = "WwwwxxxxxxxxbbbB";
+    private static final int MAGIC = 0x424F4F4B;
+    private static final int HEADER = 2 * Integer.BYTES;
+    private static final int ENTRY = Long.BYTES + Integer.BYTES;
+
+    public static void main(String[] args) {
+        if(args.length < 3){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the depth
+        String start = START;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ttMegabytes = 16;
+        for(int a = 3; a < args.length; a++){
+            if(args[a].equals("--start") && a + 1 < args.length){
+                start = args[++a];
+            } else if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--tt-mb") && a + 1 < args.length){
+                ttMegabytes = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+        int plies = Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[2]);
+        if(depth < 1 || depth > 255){
+            System.err.println("Error: The depth must be between 1 and 255");
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try{
+            build(args[0], Board.from_string(start), plies, depth, new Evaluator(ttMegabytes), pool);
+        } catch(IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        } catch(InterruptedException | ExecutionException e) {
+            System.err.println("Error: Book building failed: " + e);
+            return;
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println(String.format("Time: %.3f s", (System.nanoTime() - startTime) / 1e9));
+    }
+
+    // Searches every position of the book that the journal does not hold yet, then writes the book
+    private static void build(String file, long start, int plies, int depth, Evaluator evaluator, ExecutorService pool)
+            throws IOException, InterruptedException, ExecutionException {
+        List<Long> positions = positions(start, plies);
+        Path journal = Paths.get(file + ".partial");
+        Map<Long, Integer> entries = read_journal(journal, depth);
+        System.out.println("Positions: " + positions.size() + ", already searched: " + entries.size());
+
+        // Pick the positions still to search before any task starts, the workers only write the journal and the
+        // results are added to entries on this thread once each search is done
+        List<Long> pending = new ArrayList<Long>();
+        Set<Long> pendingKeys = new HashSet<Long>();
+        for(long pos : positions){
+            long key = TranspositionTable.hash(pos, true);
+            if(!entries.containsKey(key) && pendingKeys.add(key)){
+                pending.add(pos);
+            }
+        }
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal.toFile(), true)))){
+            List<Future<Integer>> tasks = new ArrayList<Future<Integer>>();
+            for(long pos : pending){
+                tasks.add(pool.submit(() -> {
+                    int data = search(evaluator, pos, depth);
+                    synchronized(out){
+                        out.writeLong(TranspositionTable.hash(pos, true));
+                        out.writeInt(data);
+                        out.flush();
+                    }
+                    return data;
+                }));
+            }
+            for(int t = 0; t < tasks.size(); t++){
+                entries.put(TranspositionTable.hash(pending.get(t), true), tasks.get(t).get());
+            }
+        }
+
+        write(file, entries);
+        Files.delete(journal);
+        System.out.println("Book entries: " + entries.size());
+    }
+
+    // Returns every position with White to move reached within plies moves of start in which neither side has won
+    private static List<Long> positions(long start, int plies){
+        List<Long> positions = new ArrayList<Long>();
+        Set<Long> seenWhite = new HashSet<Long>();
+        Set<Long> seenBlack = new HashSet<Long>();
+        List<Long> level = new ArrayList<Long>();
+        level.add(start);
+        boolean white = true;
+
+        for(int ply = 0; ply <= plies && !level.isEmpty(); ply++){
+            List<Long> next = new ArrayList<Long>();
+            for(long pos : level){
+                if(is_won(pos) || !(white ? seenWhite : seenBlack).add(pos)){
+                    continue;
+                }
+                if(white){
+                    positions.add(pos);
+                }
+                int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+                for(; pieces != 0; pieces &= pieces - 1){
+                    next.add(Board.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white));
+                }
+            }
+            level = next;
+            white = !white;
+        }
+
+        return positions;
+    }
+
+    // Searches a position like a command line run of AlphaBeta and packs the result
+    // The best move is the first White move in board order that leads to the best position
+    private static int search(Evaluator evaluator, long pos, int depth){
+        Evaluator.Result result = evaluator.evaluate("alphabeta", pos, depth, 0, null);
+        int move = 0;
+        for(int pieces = Board.white_pieces(pos); pieces != 0; pieces &= pieces - 1){
+            move = Integer.numberOfTrailingZeros(pieces);
+            if(Board.generate_move(pos, move) == result.getPosition()){
+                break;
+            }
+        }
+        return pack(result.getEstimate(), depth, move);
+    }
+
+    // Reads the results of an earlier build, dropping a record cut short by a crash and results of another depth
+    private static Map<Long, Integer> read_journal(Path journal, int depth) throws IOException {
+        Map<Long, Integer> entries = new HashMap<Long, Integer>();
+        if(!Files.exists(journal)){
+            return entries;
+        }
+
+        try(RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")){
+            file.setLength(file.length() - file.length() % ENTRY);
+            ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(journal));
+            while(records.remaining() >= ENTRY){
+                long key = records.getLong();
+                int data = records.getInt();
+                if(depth(data) == depth){
+                    entries.put(key, data);
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Method for writing the entries sorted by hash
+    private static void write(String file, Map<Long, Integer> entries) throws IOException {
+        long[] keys = new long[entries.size()];
+        int n = 0;
+        for(long key : entries.keySet()){
+            keys[n++] = key;
+        }
+        Arrays.sort(keys);
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            out.writeInt(MAGIC);
+            out.writeInt(keys.length);
+            for(long key : keys){
+                out.writeLong(key);
+                out.writeInt(entries.get(key));
+            }
+        }
+    }
+
+    private static boolean is_won(long pos){
+        int estimate = Board.estimate_position(pos);
+        return estimate == 100 || estimate == -100;
+    }
+
+    private final long[] keys;
+    private final int[] data;
+
+    private OpeningBook(long[] keys, int[] data){
+        this.keys = keys;
+        this.data = data;
+    }
+
+    // Reads a book file into memory
+    public static OpeningBook open(String path) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        if(in.remaining() < HEADER || in.getInt() != MAGIC){
+            throw new IOException("Not an opening book file: " + path);
+        }
+        int count = in.getInt();
+        if(count < 0 || in.remaining() != (long) count * ENTRY){
+            throw new IOException("Truncated or corrupt opening book file: " + path);
+        }
+
+        long[] keys = new long[count];
+        int[] data = new int[count];
+        for(int n = 0; n < count; n++){
+            keys[n] = in.getLong();
+            data[n] = in.getInt();
+        }
+        return new OpeningBook(keys, data);
+    }
+
+    // Returns the packed data word of a position with White to move, or 0 if it is not in the book
+    public int probe(long pos){
+        int n = Arrays.binarySearch(keys, TranspositionTable.hash(pos, true));
+        return n >= 0 ? data[n] : 0;
+    }
+
+    public int getSize(){
+        return keys.length;
+    }
+
+    // Methods for packing and unpacking a data word, the depth is never 0 so a data word is never 0
+    private static int pack(int estimate, int depth, int move){
+        return (estimate & 0xFFFF) | (depth << 16) | (move << 24);
+    }
+
+    public static int estimate(int data){
+        return (short) data;
+    }
+
+    public static int depth(int data){
+        return (data >>> 16) & 0xFF;
+    }
+
+    public static int move(int data){
+        return (data >>> 24) & 15;
+    }
+}
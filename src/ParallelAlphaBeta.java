@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+// Young Brothers Wait parallel alpha beta search built on a ForkJoinPool
+// At every node above the split depth the eldest child is searched first on the current thread to establish a bound,
+// then the younger siblings are forked. Siblings share the window of their parent node, so a better alpha (or beta)
+// found by one sibling narrows the window of every sibling that starts after it. When a sibling causes a cutoff the
+// node is cancelled and all tasks below it stop at their next check. Below the split depth each worker thread runs
+// the serial AlphaBeta.evaluate_moves with its own move ordering, all workers share one transposition table.
+public class ParallelAlphaBeta {
+    // Remaining depth below which subtrees are searched serially, smaller subtrees are not worth a task
+    public static final int SPLIT_DEPTH = 4;
+
+    private final ForkJoinPool pool;
+    private final AlphaBeta.GameCalculations game;
+    private final SearchStats stats;
+    private final TranspositionTable tt;
+    private final String ordering;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(this::new_worker);
+    private int[] principalVariation = new int[0];
+
+    public ParallelAlphaBeta(int threads, AlphaBeta.GameCalculations game, SearchStats stats, TranspositionTable tt, String ordering){
+        this.pool = new ForkJoinPool(threads);
+        this.game = game;
+        this.stats = stats;
+        this.tt = tt;
+        this.ordering = ordering;
+    }
+
+    // Searches the position with White to move and returns the best child position, same as AlphaBeta.evaluate_moves_first
+    // Root children are searched with a window one below the current alpha, so every child that reaches the best
+    // estimate returns it exactly and the first of them in board order is chosen, just like the serial search.
+    public AlphaBeta.ABMove evaluate_moves_first(long pos, int depth){
+        principalVariation = new int[0];
+
+        // A position the opening book holds at this depth or deeper is answered from the book
+        int book = AlphaBeta.book_entry(game, pos, depth);
+        if(book != 0 && depth > 0){
+            AlphaBeta.ABMove move = new AlphaBeta.ABMove();
+            move.setMove(game.generate_move(pos, OpeningBook.move(book)), OpeningBook.estimate(book));
+            principalVariation = new int[]{OpeningBook.move(book)};
+            return move;
+        }
+
+        SearchStats.Iteration iteration = stats.begin_iteration("alphabeta-parallel", depth);
+        AlphaBeta.ABMove move = pool.invoke(new RootTask(pos, depth));
+        stats.end_iteration(iteration, move.getEstimate(), true);
+        return move;
+    }
+
+    // Returns the best line found by evaluate_moves_first, the split search only keeps track of the best root move
+    public int[] principal_variation(){
+        return principalVariation;
+    }
+
+    public void shutdown(){
+        pool.shutdown();
+    }
+
+    private Worker new_worker(){
+        Worker w = new Worker();
+        w.search.tt = tt;
+        w.search.ordering = MoveOrdering.parse(ordering);
+        return w;
+    }
+
+    // Recursive parallel search of a single position, the result is ignored by the caller if parent was cancelled
+    private int search(long pos, int depth, int ply, boolean max, int alpha, int beta, Node parent){
+        Worker w = workers.get();
+
+        if(depth < SPLIT_DEPTH){
+            // Small subtrees are searched serially and abandoned as soon as the parent node is cancelled
+            w.search.stop = parent;
+            int estimate = AlphaBeta.evaluate_moves(game, pos, stats, w.search, depth, ply, max, alpha, beta);
+            w.search.stop = null;
+            w.search.aborted = false;
+            return estimate;
+        }
+
+        // Check if White or Black has the won the game and return the estimate if true
+        int estimate = game.estimate_position(pos);
+        if(estimate == 100 || estimate == -100){
+            stats.terminal_win(ply);
+            return estimate;
+        }
+
+        // A position in the endgame tablebase is not searched, its game theoretic value is known
+        if(game.tablebase != null){
+            int score = game.tablebase.score(pos, max);
+            if(score != Tablebase.NONE){
+                stats.tablebase_hit();
+                return max ? score : -score;
+            }
+        }
+        stats.interior_node(ply);
+
+        long[] children = children(pos, max);
+        Node node = new Node(parent, max, alpha, beta, false);
+
+        // Search the eldest brother on this thread to establish a bound before the others are started
+        int value = search(children[0], depth - 1, ply + 1, !max, alpha, beta, node);
+        if(node.is_cancelled() || node.update(value, 0)){
+            return node.best;
+        }
+
+        // Search the younger brothers in parallel
+        List<ChildTask> tasks = new ArrayList<ChildTask>();
+        for(int c = 1; c < children.length; c++){
+            tasks.add(new ChildTask(children[c], c, depth - 1, ply + 1, node));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        return node.best;
+    }
+
+    // Method for generating the children of a position in board order for the side to move
+    private long[] children(long pos, boolean white){
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        long[] children = new long[Integer.bitCount(pieces)];
+
+        for(int c = 0; pieces != 0; pieces &= pieces - 1, c++){
+            int i = Integer.numberOfTrailingZeros(pieces);
+            children[c] = game.generate_move(pos, i, white);
+        }
+
+        return children;
+    }
+
+    // Returns the index of the nth piece (counting from 0) in a mask of pieces
+    private static int nth_piece(int pieces, int n){
+        for(; n > 0; n--){
+            pieces &= pieces - 1;
+        }
+        return Integer.numberOfTrailingZeros(pieces);
+    }
+
+    // Per thread search state, only ever used by the thread that owns it
+    static class Worker{
+        final AlphaBeta.SearchContext search = new AlphaBeta.SearchContext();
+    }
+
+    // Shared state of a node whose children are searched in parallel
+    static class Node implements BooleanSupplier{
+        final Node parent;
+        final boolean max;
+        final boolean root;
+        volatile boolean cancelled;
+        volatile int alpha;
+        volatile int beta;
+        int best;
+        int bestIndex = -1;
+
+        Node(Node parent, boolean max, int alpha, int beta, boolean root){
+            this.parent = parent;
+            this.max = max;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.root = root;
+            this.best = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        }
+
+        // Method for merging the estimate of child number index, returns true if the node has a cutoff
+        synchronized boolean update(int value, int index){
+            if(max){
+                if(value > best || (root && value == best && index < bestIndex)){
+                    best = value;
+                    bestIndex = index;
+                }
+                alpha = Math.max(alpha, value);
+            } else {
+                if(value < best){
+                    best = value;
+                    bestIndex = index;
+                }
+                beta = Math.min(beta, value);
+            }
+
+            // Prune the remaining siblings if a contradiction occurs
+            if(beta <= alpha){
+                cancelled = true;
+            }
+            return cancelled;
+        }
+
+        // A node is cancelled if it or any of its ancestors had a cutoff
+        boolean is_cancelled(){
+            for(Node n = this; n != null; n = n.parent){
+                if(n.cancelled){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean getAsBoolean(){
+            return is_cancelled();
+        }
+    }
+
+    // Task searching one younger brother with the window of its parent at the time the task starts
+    class ChildTask extends RecursiveTask<Integer>{
+        private static final long serialVersionUID = 1L;
+
+        final long pos;
+        final int index;
+        final int depth;
+        final int ply;
+        final Node node;
+
+        ChildTask(long pos, int index, int depth, int ply, Node node){
+            this.pos = pos;
+            this.index = index;
+            this.depth = depth;
+            this.ply = ply;
+            this.node = node;
+        }
+
+        @Override
+        protected Integer compute(){
+            if(node.is_cancelled()){
+                return 0;
+            }
+
+            int alpha = node.alpha;
+            if(node.root && alpha != Integer.MIN_VALUE){
+                alpha--;
+            }
+            int value = search(pos, depth, ply, !node.max, alpha, node.beta, node);
+            if(!node.is_cancelled()){
+                node.update(value, index);
+            }
+            return value;
+        }
+    }
+
+    // Task searching the root position, White is always to move at the root
+    class RootTask extends RecursiveTask<AlphaBeta.ABMove>{
+        private static final long serialVersionUID = 1L;
+
+        final long pos;
+        final int depth;
+
+        RootTask(long pos, int depth){
+            this.pos = pos;
+            this.depth = depth;
+        }
+
+        @Override
+        protected AlphaBeta.ABMove compute(){
+            AlphaBeta.ABMove temp = new AlphaBeta.ABMove();
+
+            // Return the position and its estimate if the depth is 0 or the game is already decided
+            int estimate = game.estimate_position(pos);
+            if(depth == 0 || estimate == 100 || estimate == -100){
+                temp.setMove(pos, estimate);
+                if(depth == 0){
+                    stats.leaf(0);
+                } else {
+                    stats.terminal_win(0);
+                }
+                return temp;
+            }
+            stats.interior_node(0);
+
+            long[] children = children(pos, true);
+            Node root = new Node(null, true, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+
+            // Search the eldest brother first, then all other root moves in parallel
+            root.update(search(children[0], depth - 1, 1, false, Integer.MIN_VALUE, Integer.MAX_VALUE, root), 0);
+            List<ChildTask> tasks = new ArrayList<ChildTask>();
+            for(int c = 1; c < children.length; c++){
+                tasks.add(new ChildTask(children[c], c, depth - 1, 1, root));
+            }
+            invokeAll(tasks);
+
+            temp.setMove(children[root.bestIndex], root.best);
+            principalVariation = new int[]{nth_piece(Board.white_pieces(pos), root.bestIndex)};
+            return temp;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Parallel versions of the exhaustive MiniMax and MiniMaxImproved searches built on a ForkJoinPool
+// Every node with at least splitDepth plies left forks one task per move and takes the best of their results.
+// Smaller subtrees are searched serially by MiniMax.evaluate_moves or MiniMaxImproved.evaluate_moves on the worker
+// thread. Without pruning the same positions are visited whatever the order, so the estimate and every count match
+// the serial search, and the root keeps the first best move in board order like the serial root.
+// Serial subtrees count into a SearchStats private to their worker thread, which are added to the shared counters
+// once the search is done, so the worker threads never update the same counters.
+public class ParallelMiniMax {
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+    private final List<SearchStats> workerStats = new ArrayList<SearchStats>();
+    private ThreadLocal<SearchStats> workers;
+
+    public ParallelMiniMax(int threads, int splitDepth){
+        this.pool = new ForkJoinPool(threads);
+        this.splitDepth = Math.max(1, splitDepth);
+    }
+
+    public void shutdown(){
+        pool.shutdown();
+    }
+
+    // Parallel MiniMax.evaluate_moves_first, white is the side to move at the root
+    public MiniMax.Move evaluate_moves_first(MiniMax.GameCalculations game, long pos, SearchStats stats, int depth, boolean white){
+        SearchStats.Iteration iteration = stats.begin_iteration(white ? "minimax-parallel" : "minimax-black-parallel", depth);
+        start(stats);
+        MiniMax.Move move = pool.invoke(new RecursiveTask<MiniMax.Move>(){
+            @Override
+            protected MiniMax.Move compute(){
+                return minimax_root(game, pos, stats, depth, white);
+            }
+        });
+        finish(stats);
+        stats.end_iteration(iteration, move.getEstimate(), true);
+        return move;
+    }
+
+    // Parallel MiniMaxImproved.evaluate_moves_first, White is to move at the root
+    public MiniMaxImproved.Move evaluate_moves_first(MiniMaxImproved.GameCalculations game, long pos, SearchStats stats, int depth){
+        SearchStats.Iteration iteration = stats.begin_iteration("minimax-improved-parallel", depth);
+        start(stats);
+        MiniMaxImproved.Move move = pool.invoke(new RecursiveTask<MiniMaxImproved.Move>(){
+            @Override
+            protected MiniMaxImproved.Move compute(){
+                return improved_root(game, pos, stats, depth);
+            }
+        });
+        finish(stats);
+        stats.end_iteration(iteration, move.getEstimate(), true);
+        return move;
+    }
+
+    // Method for giving every worker thread new private counters for a search
+    private void start(SearchStats stats){
+        workerStats.clear();
+        workers = ThreadLocal.withInitial(() -> {
+            SearchStats local = new SearchStats();
+            if(stats.tracks_plies()){
+                local.track_plies();
+            }
+            synchronized(workerStats){
+                workerStats.add(local);
+            }
+            return local;
+        });
+    }
+
+    // Method for adding the private counters of the worker threads to the shared counters
+    private void finish(SearchStats stats){
+        synchronized(workerStats){
+            for(SearchStats local : workerStats){
+                stats.add(local);
+            }
+            workerStats.clear();
+        }
+    }
+
+    // Root of the negamax search, same as MiniMax.evaluate_moves_first with the children searched in parallel
+    private MiniMax.Move minimax_root(MiniMax.GameCalculations game, long pos, SearchStats stats, int depth, boolean white){
+        MiniMax.Move temp = new MiniMax.Move();
+
+        int estimate = game.estimate_position(pos);
+        if(depth == 0){
+            temp.setMove(pos, estimate);
+            stats.leaf(0);
+            return temp;
+        }
+        if(estimate == 100 || estimate == -100){
+            temp.setMove(pos, estimate);
+            stats.terminal_win(0);
+            return temp;
+        }
+        stats.interior_node(0);
+
+        long[] children = children(pos, white);
+        List<NegamaxTask> tasks = new ArrayList<NegamaxTask>();
+        for(long child : children){
+            tasks.add(new NegamaxTask(game, child, stats, depth - 1, 1, !white));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int bestVal = -1000;
+        long bestPos = pos;
+        for(int c = 0; c < children.length; c++){
+            int value = -tasks.get(c).join();
+            if(bestVal < value){
+                bestVal = value;
+                bestPos = children[c];
+            }
+        }
+
+        temp.setMove(bestPos, white ? bestVal : -bestVal);
+        return temp;
+    }
+
+    // Returns the estimate of pos for the side to move, same as MiniMax.evaluate_moves
+    class NegamaxTask extends RecursiveTask<Integer>{
+        private static final long serialVersionUID = 1L;
+
+        final MiniMax.GameCalculations game;
+        final long pos;
+        final SearchStats stats;
+        final int depth;
+        final int ply;
+        final boolean white;
+
+        NegamaxTask(MiniMax.GameCalculations game, long pos, SearchStats stats, int depth, int ply, boolean white){
+            this.game = game;
+            this.pos = pos;
+            this.stats = stats;
+            this.depth = depth;
+            this.ply = ply;
+            this.white = white;
+        }
+
+        @Override
+        protected Integer compute(){
+            if(depth < splitDepth){
+                return MiniMax.evaluate_moves(game, pos, workers.get(), depth, ply, white);
+            }
+
+            // Check if White or Black has the won the game and return the estimate if true
+            int estimate = game.estimate_position(pos);
+            if(estimate == 100 || estimate == -100){
+                stats.terminal_win(ply);
+                return white ? estimate : -estimate;
+            }
+
+            // A position in the endgame tablebase is not searched, its game theoretic value is known
+            if(game.tablebase != null){
+                int score = game.tablebase.score(pos, white);
+                if(score != Tablebase.NONE){
+                    stats.tablebase_hit();
+                    return score;
+                }
+            }
+            stats.interior_node(ply);
+
+            List<NegamaxTask> tasks = new ArrayList<NegamaxTask>();
+            for(long child : children(pos, white)){
+                tasks.add(new NegamaxTask(game, child, stats, depth - 1, ply + 1, !white));
+            }
+            invokeAll(tasks);
+
+            int bestVal = Integer.MIN_VALUE;
+            for(NegamaxTask task : tasks){
+                bestVal = Math.max(bestVal, -task.join());
+            }
+            return bestVal;
+        }
+    }
+
+    // Root of the MiniMaxImproved search, same as MiniMaxImproved.evaluate_moves_first with the children searched in parallel
+    private MiniMaxImproved.Move improved_root(MiniMaxImproved.GameCalculations game, long pos, SearchStats stats, int depth){
+        MiniMaxImproved.Move temp = new MiniMaxImproved.Move();
+        int pawns = game.pawn_score(pos);
+
+        int estimate = game.estimate_position(pos, pawns);
+        if(depth == 0){
+            temp.setMove(pos, estimate);
+            stats.leaf(0);
+            return temp;
+        }
+        if(estimate == 100 || estimate == -100){
+            temp.setMove(pos, estimate);
+            stats.terminal_win(0);
+            return temp;
+        }
+        stats.interior_node(0);
+
+        long[] children = children(pos, true);
+        List<ImprovedTask> tasks = new ArrayList<ImprovedTask>();
+        for(long child : children){
+            tasks.add(new ImprovedTask(game, child, game.update_pawn_score(pos, child, pawns), stats, depth - 1, 1, false));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int bestVal = -1000;
+        long bestPos = pos;
+        for(int c = 0; c < children.length; c++){
+            int value = tasks.get(c).join();
+            if(bestVal < value){
+                bestVal = value;
+                bestPos = children[c];
+            }
+        }
+
+        temp.setMove(bestPos, bestVal);
+        return temp;
+    }
+
+    // Returns the estimate of pos from White's point of view, same as MiniMaxImproved.evaluate_moves
+    class ImprovedTask extends RecursiveTask<Integer>{
+        private static final long serialVersionUID = 1L;
+
+        final MiniMaxImproved.GameCalculations game;
+        final long pos;
+        final int pawns;
+        final SearchStats stats;
+        final int depth;
+        final int ply;
+        final boolean max;
+
+        ImprovedTask(MiniMaxImproved.GameCalculations game, long pos, int pawns, SearchStats stats, int depth, int ply, boolean max){
+            this.game = game;
+            this.pos = pos;
+            this.pawns = pawns;
+            this.stats = stats;
+            this.depth = depth;
+            this.ply = ply;
+            this.max = max;
+        }
+
+        @Override
+        protected Integer compute(){
+            if(depth < splitDepth){
+                return MiniMaxImproved.evaluate_moves(game, pos, pawns, workers.get(), depth, ply, max);
+            }
+
+            // Check if White or Black has the won the game and return the estimate if true
+            int estimate = game.estimate_position(pos, pawns);
+            if(estimate == 100 || estimate == -100){
+                stats.terminal_win(ply);
+                return estimate;
+            }
+            stats.interior_node(ply);
+
+            List<ImprovedTask> tasks = new ArrayList<ImprovedTask>();
+            for(long child : children(pos, max)){
+                tasks.add(new ImprovedTask(game, child, game.update_pawn_score(pos, child, pawns), stats, depth - 1, ply + 1, !max));
+            }
+            invokeAll(tasks);
+
+            int bestVal = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            for(ImprovedTask task : tasks){
+                bestVal = max ? Math.max(bestVal, task.join()) : Math.min(bestVal, task.join());
+            }
+            return bestVal;
+        }
+    }
+
+    // Method for generating the children of a position in board order for the side to move
+    private static long[] children(long pos, boolean white){
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        long[] children = new long[Integer.bitCount(pieces)];
+
+        for(int c = 0; pieces != 0; pieces &= pieces - 1, c++){
+            children[c] = Board.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white);
+        }
+
+        return children;
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Counts every position of the game tree below a board, to check the move generator and measure its speed
+// Moves alternate between White and Black like in the searches, and a position where White or Black has already won
+// has no moves. For each depth the number of positions and of won positions is printed, and --divide prints the
+// number of leaf positions below every root move.
+// With --flipped Black moves are generated by flipping the board and making a White move, the way Black moves were
+// generated before the direct Black move generator existed, and with --computed moves are computed instead of
+// looked up in the move tables. Every generator must give the same counts and the same checksum of the leaf boards.
+// The root and its replies are split over --threads worker threads.
+public class Perft {
+    private static final String USAGE = "Usage: java Perft <input_file> <depth> [--black] [--flipped] [--computed] [--divide] [--threads <count>]";
+
+    public static void main(String[] args) {
+        if(args.length < 2){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the depth
+        boolean white = true;
+        boolean flipped = false;
+        boolean divide = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for(int a = 2; a < args.length; a++){
+            if(args[a].equals("--black")){
+                white = false;
+            } else if(args[a].equals("--flipped")){
+                flipped = true;
+            } else if(args[a].equals("--computed")){
+                Board.use_move_tables(false);
+            } else if(args[a].equals("--divide")){
+                divide = true;
+            } else if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        // Read position info from the input file and pack the board into a long
+        File input = new File(args[0]);
+        long position;
+
+        try{
+            // If input file exists, read the file
+            Scanner inputReader = new Scanner(input);
+            position = Board.from_string(inputReader.nextLine());
+            inputReader.close();
+        } catch(FileNotFoundException e) {
+            // If input file doesn't exist, return an error message and exit
+            System.err.println("Error: File does not exist");
+            return;
+        }
+
+        int depth = Integer.parseInt(args[1]);
+        Perft perft = new Perft(new MiniMax.GameCalculations(), flipped);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Result result;
+        long start = System.nanoTime();
+        try{
+            result = perft.run(pool, position, white, depth);
+        } catch(InterruptedException | ExecutionException e) {
+            System.err.println("Error: Perft failed: " + e);
+            return;
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Output the counts for every depth, the divide and the speed of the generator
+        System.out.println("Board Position: " + Board.to_string(position) + " (" + (white ? "White" : "Black") + " to move)");
+        long total = 0;
+        for(int d = 1; d <= depth; d++){
+            System.out.println("Depth " + d + ": " + result.positions[d] + " positions, " + result.wins[d] + " won");
+            total += result.positions[d];
+        }
+        if(divide){
+            for(int r = 0; r < result.rootMoves.length; r++){
+                System.out.println(Board.to_string(result.rootMoves[r]) + ": " + result.divide[r]);
+            }
+        }
+        System.out.println("Leaf positions: " + result.positions[depth]);
+        System.out.println("Leaf checksum: " + Long.toHexString(result.checksum));
+        System.out.println("Total positions: " + total);
+        System.out.println(String.format("Time: %.3f s", elapsed / 1e9));
+        System.out.println(String.format("Positions per second: %.0f", total / (elapsed / 1e9)));
+    }
+
+    private final MiniMax.GameCalculations game;
+    private final boolean flipped;
+
+    public Perft(MiniMax.GameCalculations game, boolean flipped){
+        this.game = game;
+        this.flipped = flipped;
+    }
+
+    // Counts the tree below pos to the given depth, the root moves and their replies are searched on the pool
+    public Result run(ExecutorService pool, long pos, boolean white, int depth) throws InterruptedException, ExecutionException {
+        Result result = new Result(depth);
+        result.positions[0] = 1;
+        if(depth == 0 || is_won(pos)){
+            result.rootMoves = new long[0];
+            result.divide = new long[0];
+            return result;
+        }
+
+        // One task per root move, or per reply to it if the tree is deep enough to be worth splitting further
+        int[] roots = pieces(pos, white);
+        result.rootMoves = new long[roots.length];
+        result.divide = new long[roots.length];
+        List<Future<Result>> tasks = new ArrayList<Future<Result>>();
+        List<Integer> taskRoots = new ArrayList<Integer>();
+
+        for(int r = 0; r < roots.length; r++){
+            long child = move(pos, roots[r], white);
+            result.rootMoves[r] = child;
+
+            if(depth >= 3 && !is_won(child)){
+                result.positions[1]++;
+                for(int reply : pieces(child, !white)){
+                    long grandchild = move(child, reply, !white);
+                    tasks.add(pool.submit(() -> count(grandchild, white, depth, 2)));
+                    taskRoots.add(r);
+                }
+            } else {
+                tasks.add(pool.submit(() -> count(child, !white, depth, 1)));
+                taskRoots.add(r);
+            }
+        }
+
+        // Add up the counts of every task, the leaves of a task belong to its root move
+        for(int t = 0; t < tasks.size(); t++){
+            Result counts = tasks.get(t).get();
+            for(int d = 0; d <= depth; d++){
+                result.positions[d] += counts.positions[d];
+                result.wins[d] += counts.wins[d];
+            }
+            result.divide[taskRoots.get(t)] += counts.positions[depth];
+            result.checksum += counts.checksum;
+        }
+
+        return result;
+    }
+
+    // Counts the tree below pos, which is ply moves below the root, on a single thread
+    private Result count(long pos, boolean white, int depth, int ply){
+        Result result = new Result(depth);
+        count(pos, white, depth, ply, result);
+        return result;
+    }
+
+    private void count(long pos, boolean white, int depth, int ply, Result result){
+        result.positions[ply]++;
+        if(ply == depth){
+            result.checksum += pos * 0x9E3779B97F4A7C15L;
+        }
+        if(is_won(pos)){
+            result.wins[ply]++;
+            return;
+        }
+        if(ply == depth){
+            return;
+        }
+
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        for(; pieces != 0; pieces &= pieces - 1){
+            count(move(pos, Integer.numberOfTrailingZeros(pieces), white), !white, depth, ply + 1, result);
+        }
+    }
+
+    // Method for generating the move of the piece on cell i, directly or for Black by flipping the board
+    private long move(long pos, int i, boolean white){
+        if(white || !flipped){
+            return game.generate_move(pos, i, white);
+        }
+        return Board.flip_position(game.generate_move(Board.flip_position(pos), Board.SIZE - 1 - i));
+    }
+
+    private boolean is_won(long pos){
+        int estimate = game.estimate_position(pos);
+        return estimate == 100 || estimate == -100;
+    }
+
+    // Returns the cells of the pieces of one side in board order
+    private static int[] pieces(long pos, boolean white){
+        int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos);
+        int[] cells = new int[Integer.bitCount(pieces)];
+        for(int n = 0; pieces != 0; pieces &= pieces - 1){
+            cells[n++] = Integer.numberOfTrailingZeros(pieces);
+        }
+        return cells;
+    }
+
+    // Number of positions and won positions at every depth, and the leaf positions below every root move
+    // The checksum adds up a multiple of every leaf board, so generators that reach different leaves disagree
+    static class Result{
+        final long[] positions;
+        final long[] wins;
+        long checksum;
+        long[] rootMoves;
+        long[] divide;
+
+        Result(int depth){
+            this.positions = new long[depth + 1];
+            this.wins = new long[depth + 1];
+        }
+
+        public long getLeaves(){
+            return positions[positions.length - 1];
+        }
+    }
+}
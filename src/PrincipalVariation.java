@@ -0,0 +1,41 @@
+import java.util.Arrays;
+
+// Triangular table of principal variations, the best line found below every ply of the current search
+// Row ply holds the best move at ply followed by the best line below it, so a row never needs more entries than
+// there are plies left below it. A move is the index of the piece that moves, like in MoveOrdering.
+public class PrincipalVariation {
+    private int[][] moves = new int[0][];
+    private int[] length = new int[0];
+
+    // Method for making room for a search that goes at most plies - 1 plies below the root
+    // Growing the table drops the lines stored so far, it is called before a search starts
+    public void ensure(int plies){
+        if(plies <= moves.length){
+            return;
+        }
+
+        moves = new int[plies][];
+        for(int p = 0; p < plies; p++){
+            moves[p] = new int[plies - p];
+        }
+        length = new int[plies];
+    }
+
+    // Method for emptying the line at a ply, done when a node is entered
+    public void clear(int ply){
+        length[ply] = 0;
+    }
+
+    // Method for making move followed by the line of the next ply the best line at ply
+    public void update(int ply, int move){
+        int n = length[ply + 1];
+        moves[ply][0] = move;
+        System.arraycopy(moves[ply + 1], 0, moves[ply], 1, n);
+        length[ply] = n + 1;
+    }
+
+    // Returns a copy of the best line at ply
+    public int[] line(int ply){
+        return Arrays.copyOf(moves[ply], length[ply]);
+    }
+}
@@ -0,0 +1,481 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+// Depth first proof number search (df-pn) that decides whether the side to move can force its king off the board
+// The attacker is the side whose win is being proved. At positions where the attacker is to move (OR nodes) one move
+// has to win, where the defender is to move (AND nodes) every move has to. Every position has a proof number, an
+// estimate of the positions still to be solved to prove the win, and a disproof number for disproving it:
+//   OR node:  proof number = smallest proof number of its children, disproof number = largest disproof number of
+//             its children plus one for every other child not yet disproved
+//   AND node: the same with proof and disproof numbers swapped
+// These are the weak proof numbers. The usual sum counts a position reached by several move orders once per path,
+// and since the moves of this game keep meeting again the sums grow without bound and the search stops making
+// progress. The search always descends into the most proving child, with thresholds that send it back up once
+// another child becomes more promising by a quarter (the 1 + epsilon trick, which saves many returns to the same
+// child), and keeps the numbers of the positions it has seen in a node store.
+// A won position is proved (proof number 0) or disproved (disproof number 0) by the static estimate, like in the
+// searches. Jumped pieces are sent back, so a game can return to a position it has already passed through. Such a
+// repetition is disproved: it is not a win for the attacker, and the defender can keep repeating. A disproof that
+// depends on a repetition is marked, since one found on one path is reused on others and can in rare cases miss a
+// win through a different order of moves (the graph history interaction). Proofs never depend on repetitions.
+// The win of the side to move is searched first. If it is disproved, the win of the opponent is searched next, so
+// the result is a win, a loss, a draw (neither side can force a win) or unknown if the time ran out first.
+// The node store is a table of a fixed number of entries that fits the memory budget. Each position maps to a bucket
+// of four entries and replaces the entry that took the least work to find, so large proofs stay in the store.
+public class ProofNumberSearch {
+    private static final String USAGE = "Usage: java ProofNumberSearch <input_file> [--black] [--mb <megabytes>] [--time-ms <milliseconds>]";
+
+    // Proof and disproof numbers are capped at INFINITY, which stands for a proved or disproved position
+    private static final int INFINITY = 1 << 30;
+    private static final int BUCKET = 4;
+    private static final int BYTES_PER_ENTRY = Long.BYTES + 2 * Integer.BYTES + Long.BYTES + 1;
+    // Flags of an entry: the side to move and whether its disproof depends on a repetition
+    private static final byte WHITE_TO_MOVE = 1;
+    private static final byte REPETITION = 2;
+    // Stack size of the search thread, the search can go many thousands of plies deep before it backs up
+    private static final long STACK_BYTES = 512L << 20;
+
+    public static void main(String[] args) {
+        if(args.length < 1){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the input file
+        boolean white = true;
+        int megabytes = 256;
+        long timeMillis = 60_000;
+        for(int a = 1; a < args.length; a++){
+            if(args[a].equals("--black")){
+                white = false;
+            } else if(args[a].equals("--mb") && a + 1 < args.length){
+                megabytes = Integer.parseInt(args[++a]);
+            } else if(args[a].equals("--time-ms") && a + 1 < args.length){
+                timeMillis = Long.parseLong(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        // Read position info from the input file and pack the board into a long
+        File input = new File(args[0]);
+        long position;
+
+        try{
+            // If input file exists, read the file
+            Scanner inputReader = new Scanner(input);
+            position = Board.from_string(inputReader.nextLine());
+            inputReader.close();
+        } catch(FileNotFoundException e) {
+            // If input file doesn't exist, return an error message and exit
+            System.err.println("Error: File does not exist");
+            return;
+        }
+
+        // The search runs on its own thread with a stack deep enough for long lines
+        ProofNumberSearch search = new ProofNumberSearch(megabytes);
+        boolean side = white;
+        long deadline = System.nanoTime() + timeMillis * 1_000_000L;
+        Thread thread = new Thread(null, () -> search.solve(position, side, deadline), "df-pn", STACK_BYTES);
+        long start = System.nanoTime();
+        thread.start();
+        try{
+            thread.join();
+        } catch(InterruptedException e) {
+            System.err.println("Error: Interrupted");
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Output the status of both searches, the result and the work done
+        String mover = white ? "White" : "Black";
+        String opponent = white ? "Black" : "White";
+        System.out.println("Board Position: " + Board.to_string(position) + " (" + mover + " to move)");
+        System.out.println(mover + " win: " + search.moverWin);
+        if(search.opponentWin != null){
+            System.out.println(opponent + " win: " + search.opponentWin);
+        }
+        System.out.println("Result: " + search.result(mover, opponent));
+        System.out.println("Positions expanded: " + search.expanded);
+        System.out.println("Node store: " + search.used() + " of " + search.keys.length + " entries used, " + search.replaced + " replaced");
+        System.out.println(String.format("Time: %.3f s", elapsed / 1e9));
+    }
+
+    // Node store, an entry is free while its board is 0 since every position has two kings
+    private final long[] keys;
+    private final int[] proof;
+    private final int[] disproof;
+    // Work (positions expanded) for an unsolved entry, and the size of its proof or disproof tree once it is solved
+    private final long[] size;
+    private final byte[] flags;
+    private final int mask;
+    private long replaced;
+
+    // Positions on the current path, an open addressing set of Zobrist keys where 0 is a free slot
+    private long[] path = new long[1024];
+    private int pathCount;
+    // Children of the position being expanded at every ply, grown when the search goes deeper
+    private long[][] children = new long[0][];
+
+    private boolean attacker;
+    private long deadline;
+    private boolean aborted;
+    private long expanded;
+    private Status moverWin;
+    private Status opponentWin;
+
+    // Numbers of the last child looked up, set by lookup
+    private int childProof;
+    private int childDisproof;
+    private long childSize;
+    private boolean childRepetition;
+
+    public ProofNumberSearch(int megabytes){
+        long entries = Math.max(BUCKET, ((long) megabytes << 20) / BYTES_PER_ENTRY);
+        int count = (int) Long.highestOneBit(Math.min(entries, 1 << 28));
+
+        this.keys = new long[count];
+        this.proof = new int[count];
+        this.disproof = new int[count];
+        this.size = new long[count];
+        this.flags = new byte[count];
+        this.mask = count / BUCKET - 1;
+    }
+
+    // Method for deciding the position with white to move, the win of the opponent is only searched if the side to
+    // move cannot force a win
+    public void solve(long pos, boolean white, long deadline){
+        moverWin = prove(pos, white, white, deadline);
+        if(moverWin.disproved()){
+            opponentWin = prove(pos, white, !white, deadline);
+        }
+    }
+
+    // Returns the status of the win of attacker from pos with white to move, searching until deadline (System.nanoTime)
+    // The node store is cleared first
+    public Status prove(long pos, boolean white, boolean attacker, long deadline){
+        this.attacker = attacker;
+        this.deadline = deadline;
+        java.util.Arrays.fill(keys, 0L);
+        aborted = false;
+
+        // A won position needs no search
+        int estimate = Board.estimate_position(pos);
+        if(estimate == 100 || estimate == -100){
+            boolean won = (estimate == 100) == attacker;
+            return new Status(won ? 0 : INFINITY, won ? INFINITY : 0, 1, false);
+        }
+
+        // Search the root with infinite thresholds until it is solved or the time runs out
+        mid(pos, white, 0, INFINITY, INFINITY);
+        int slot = find(pos, white);
+        if(!matches(slot, pos, white)){
+            // The search was stopped before the root was expanded
+            return new Status(1, 1, 0, false);
+        }
+        return new Status(proof[slot], disproof[slot], size[slot], (flags[slot] & REPETITION) != 0);
+    }
+
+    // Expands pos until its proof number reaches proofThreshold or its disproof number reaches disproofThreshold
+    private void mid(long pos, boolean white, int ply, int proofThreshold, int disproofThreshold){
+        if(aborted || ((expanded & 1023) == 0 && System.nanoTime() >= deadline)){
+            aborted = true;
+            return;
+        }
+        expanded++;
+        long work = expanded;
+
+        long[] moves = children(ply);
+        int count = 0;
+        for(int pieces = white ? Board.white_pieces(pos) : Board.black_pieces(pos); pieces != 0; pieces &= pieces - 1){
+            moves[count++] = Board.generate_move(pos, Integer.numberOfTrailingZeros(pieces), white);
+        }
+
+        boolean or = white == attacker;
+        long key = TranspositionTable.hash(pos, white);
+        path_add(key);
+
+        int pn;
+        int dn;
+        int open;
+        while(true){
+            // Combine the numbers of the children, and find the most proving child and the runner up
+            int best = -1;
+            int bestNumber = INFINITY + 1;
+            int secondNumber = INFINITY;
+            int largest = 0;
+            open = 0;
+            for(int c = 0; c < count; c++){
+                lookup(moves[c], !white);
+                int number = or ? childProof : childDisproof;
+                int other = or ? childDisproof : childProof;
+                if(other != 0){
+                    largest = Math.max(largest, other);
+                    open++;
+                }
+                if(number < bestNumber){
+                    secondNumber = bestNumber;
+                    bestNumber = number;
+                    best = c;
+                } else if(number < secondNumber){
+                    secondNumber = number;
+                }
+            }
+            int min = bestNumber;
+            int total = (int) Math.min((long) largest + Math.max(open - 1, 0), INFINITY);
+            pn = or ? min : total;
+            dn = or ? total : min;
+
+            if(pn >= proofThreshold || dn >= disproofThreshold || aborted){
+                break;
+            }
+
+            // The child is searched until it falls well behind the runner up or the node reaches a threshold, which
+            // for the weak numbers happens once the child alone reaches the threshold less the other open children
+            lookup(moves[best], !white);
+            int second = (int) Math.min((long) secondNumber + 1 + secondNumber / 4, INFINITY);
+            int childProofThreshold;
+            int childDisproofThreshold;
+            if(or){
+                childProofThreshold = Math.min(proofThreshold, second);
+                childDisproofThreshold = disproofThreshold - open + 1;
+            } else {
+                childProofThreshold = proofThreshold - open + 1;
+                childDisproofThreshold = Math.min(disproofThreshold, second);
+            }
+            mid(moves[best], !white, ply + 1, childProofThreshold, childDisproofThreshold);
+        }
+
+        path_remove(key);
+        // A stopped search leaves its partial numbers out of the store, except at the root where they are reported
+        if(!aborted || ply == 0 || pn == 0 || dn == 0){
+            store(pos, white, pn, dn, moves, count, or, expanded - work + 1);
+        }
+    }
+
+    // Method for storing the numbers of pos, a solved position gets the size of its proof or disproof tree
+    private void store(long pos, boolean white, int pn, int dn, long[] moves, int count, boolean or, long work){
+        long treeSize = work;
+        boolean repetition = false;
+
+        if(pn == 0 || dn == 0){
+            // A proof needs one proved child at an OR node and all children at an AND node, a disproof the reverse
+            boolean all = (pn == 0) != or;
+            long total = 1;
+            long smallest = Long.MAX_VALUE;
+            boolean smallestRepetition = false;
+            for(int c = 0; c < count; c++){
+                lookup(moves[c], !white);
+                if((pn == 0 ? childProof : childDisproof) != 0){
+                    continue;
+                }
+                total = Math.min(total + childSize, Long.MAX_VALUE / 2);
+                repetition |= childRepetition;
+                if(childSize < smallest || (childSize == smallest && smallestRepetition && !childRepetition)){
+                    smallest = childSize;
+                    smallestRepetition = childRepetition;
+                }
+            }
+            if(!all){
+                total = 1 + smallest;
+                repetition = smallestRepetition;
+            }
+            treeSize = total;
+        }
+
+        int slot = find(pos, white);
+        if(!matches(slot, pos, white) && keys[slot] != 0){
+            replaced++;
+        }
+        keys[slot] = pos;
+        proof[slot] = pn;
+        disproof[slot] = dn;
+        size[slot] = treeSize;
+        flags[slot] = (byte) ((white ? WHITE_TO_MOVE : 0) | (repetition && dn == 0 ? REPETITION : 0));
+    }
+
+    // Method for reading the numbers of a child into childProof, childDisproof, childSize and childRepetition
+    private void lookup(long pos, boolean white){
+        childSize = 1;
+        childRepetition = false;
+
+        // A won position is solved by the static estimate
+        int estimate = Board.estimate_position(pos);
+        if(estimate == 100 || estimate == -100){
+            boolean won = (estimate == 100) == attacker;
+            childProof = won ? 0 : INFINITY;
+            childDisproof = won ? INFINITY : 0;
+            return;
+        }
+
+        // A position on the current path is a repetition, which the attacker does not win
+        if(path_contains(TranspositionTable.hash(pos, white))){
+            childProof = INFINITY;
+            childDisproof = 0;
+            childRepetition = true;
+            return;
+        }
+
+        int slot = find(pos, white);
+        if(matches(slot, pos, white)){
+            childProof = proof[slot];
+            childDisproof = disproof[slot];
+            childSize = size[slot];
+            childRepetition = (flags[slot] & REPETITION) != 0;
+            return;
+        }
+
+        // A new position is as hard to prove as the number of moves that must be proved, and likewise to disprove
+        int moves = Integer.bitCount(white ? Board.white_pieces(pos) : Board.black_pieces(pos));
+        boolean or = white == attacker;
+        childProof = or ? 1 : moves;
+        childDisproof = or ? moves : 1;
+    }
+
+    // Returns the slot of pos in its bucket, or the slot it replaces if it is not stored
+    // A free slot is taken first, otherwise the entry that took the least work to find
+    private int find(long pos, boolean white){
+        int bucket = (int) (TranspositionTable.hash(pos, white) & mask) * BUCKET;
+        int victim = -1;
+        for(int s = bucket; s < bucket + BUCKET; s++){
+            if(matches(s, pos, white)){
+                return s;
+            }
+            if(victim == -1 || (keys[victim] != 0 && (keys[s] == 0 || size[s] < size[victim]))){
+                victim = s;
+            }
+        }
+        return victim;
+    }
+
+    private boolean matches(int slot, long pos, boolean white){
+        return keys[slot] == pos && ((flags[slot] & WHITE_TO_MOVE) != 0) == white;
+    }
+
+    // Number of positions expanded by the searches so far
+    public long getExpanded(){
+        return expanded;
+    }
+
+    private long used(){
+        long used = 0;
+        for(long key : keys){
+            if(key != 0){
+                used++;
+            }
+        }
+        return used;
+    }
+
+    // Returns the child buffer for a ply
+    private long[] children(int ply){
+        if(ply >= children.length){
+            long[][] grown = java.util.Arrays.copyOf(children, Math.max(ply + 1, children.length * 2));
+            for(int p = children.length; p < grown.length; p++){
+                grown[p] = new long[Board.SIZE];
+            }
+            children = grown;
+        }
+        return children[ply];
+    }
+
+    // Methods for the set of positions on the current path, linear probing with backward shift deletion
+    private void path_add(long key){
+        if(2 * (pathCount + 1) > path.length){
+            long[] old = path;
+            path = new long[old.length * 2];
+            for(long k : old){
+                if(k != 0){
+                    path[path_slot(k)] = k;
+                }
+            }
+        }
+        path[path_slot(key)] = key;
+        pathCount++;
+    }
+
+    private boolean path_contains(long key){
+        return path[path_slot(key)] == key;
+    }
+
+    private void path_remove(long key){
+        int slot = path_slot(key);
+        path[slot] = 0;
+        pathCount--;
+
+        // Move later keys of the same run back so every key stays reachable from its home slot
+        int m = path.length - 1;
+        for(int next = (slot + 1) & m; path[next] != 0; next = (next + 1) & m){
+            int home = (int) mix(path[next]) & m;
+            if(((next - home) & m) >= ((next - slot) & m)){
+                path[slot] = path[next];
+                path[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    // Returns the slot holding key, or the free slot where it would go
+    private int path_slot(long key){
+        int m = path.length - 1;
+        int slot = (int) mix(key) & m;
+        while(path[slot] != 0 && path[slot] != key){
+            slot = (slot + 1) & m;
+        }
+        return slot;
+    }
+
+    private static long mix(long key){
+        return key ^ (key >>> 32);
+    }
+
+    // Returns the overall result from the two searches
+    private String result(String mover, String opponent){
+        if(moverWin.proved()){
+            return mover + " wins";
+        }
+        if(opponentWin == null || !moverWin.disproved()){
+            return "unknown";
+        }
+        if(opponentWin.proved()){
+            return opponent + " wins";
+        }
+        return opponentWin.disproved() ? "draw" : "unknown";
+    }
+
+    // Outcome of one proof search: the numbers of the root, and the size of the proof or disproof once it is solved
+    static class Status{
+        final int proof;
+        final int disproof;
+        final long size;
+        final boolean repetition;
+
+        Status(int proof, int disproof, long size, boolean repetition){
+            this.proof = proof;
+            this.disproof = disproof;
+            this.size = size;
+            this.repetition = repetition;
+        }
+
+        public boolean proved(){
+            return proof == 0;
+        }
+
+        public boolean disproved(){
+            return disproof == 0;
+        }
+
+        @Override
+        public String toString(){
+            if(proved()){
+                return "proven (proof size " + size + " positions)";
+            }
+            if(disproved()){
+                return "disproven (disproof size " + size + " positions" + (repetition ? ", through repetition" : "") + ")";
+            }
+            return "unknown (proof number " + proof + ", disproof number " + disproof + ")";
+        }
+    }
+}
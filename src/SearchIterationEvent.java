@@ -0,0 +1,28 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event for one root search of an engine, see SearchStats.begin_iteration
+// The event lasts from the start to the end of the root search, so recordings line it up with GC pauses and
+// allocation samples. Emitting it costs nothing unless a recording has the event enabled.
+@Name("cs6364.SearchIteration")
+@Label("Search Iteration")
+@Category("Game Evaluator")
+@Description("One root search of an engine, an iteration of iterative deepening or a whole fixed depth search")
+public class SearchIterationEvent extends jdk.jfr.Event {
+    @Label("Engine")
+    String engine;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Estimate")
+    int estimate;
+
+    @Label("Completed")
+    boolean completed;
+}
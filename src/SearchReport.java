@@ -0,0 +1,139 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+
+// Machine readable summary of one search, written as JSON by the engines given --stats-json <file>
+// The report is started before the search, which reads the clock and the bytes allocated so far by all threads
+// of the JVM, and written after it with the counters of the search:
+//   nodes per ply and cutoffs per ply from the root down, the effective branching factor (the growth of the nodes
+//   from one ply to the next averaged over the plies reached), the first-move cutoff ratio, the transposition table
+//   probes and hits, the time, nodes and estimate of every root search, the bytes allocated during the search and
+//   the nodes per second.
+// Allocated bytes come from the per thread allocation counters of the JVM, threads that end during the search
+// take their allocations with them. Numbers are always formatted with a decimal point, whatever the locale.
+public class SearchReport {
+    private final String engine;
+    private final long board;
+    private final int depth;
+    private final long startNanos;
+    private final long startAllocated;
+
+    // Starts a report, stats.track_plies() is called so the per ply counters are filled in
+    public SearchReport(String engine, long board, int depth, SearchStats stats){
+        this.engine = engine;
+        this.board = board;
+        this.depth = depth;
+        stats.track_plies();
+        this.startAllocated = allocated_bytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    // Method for writing the report of a finished search, tt is null if the engine has no transposition table
+    public void write(String path, SearchStats stats, TranspositionTable tt, long bestBoard, int estimate) throws IOException {
+        long elapsed = System.nanoTime() - startNanos;
+        long allocated = allocated_bytes() - startAllocated;
+        long[] nodesPerPly = stats.getNodesPerPly();
+        long nodes = stats.getNodes();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        field(json, "engine", quote(engine));
+        field(json, "board", quote(Board.to_string(board)));
+        field(json, "depth", depth);
+        field(json, "best_board", quote(Board.to_string(bestBoard)));
+        field(json, "estimate", estimate);
+        field(json, "time_ms", String.format(Locale.ROOT, "%.3f", elapsed / 1e6));
+        field(json, "nodes", nodes);
+        field(json, "nodes_per_second", String.format(Locale.ROOT, "%.0f", elapsed == 0 ? 0.0 : nodes / (elapsed / 1e9)));
+        field(json, "positions_evaluated", stats.getPositionsEvaluated());
+        field(json, "leaves", stats.getLeaves());
+        field(json, "terminal_wins", stats.getTerminalWins());
+        field(json, "interior_nodes", stats.getInteriorNodes());
+        field(json, "tablebase_hits", stats.getTablebaseHits());
+        field(json, "quiescence_nodes", stats.getQuiescenceNodes());
+        field(json, "late_move_reductions", stats.getLateMoveReductions());
+        field(json, "late_move_re_searches", stats.getLateMoveReSearches());
+        field(json, "futility_prunes", stats.getFutilityPrunes());
+        field(json, "extensions", stats.getExtensions());
+        field(json, "nodes_per_ply", array(nodesPerPly));
+        field(json, "cutoffs_per_ply", array(stats.getCutoffsPerPly()));
+        field(json, "effective_branching_factor", String.format(Locale.ROOT, "%.3f", branching_factor(nodesPerPly)));
+        field(json, "cutoffs", stats.getCutoffs());
+        field(json, "first_move_cutoffs", stats.getFirstMoveCutoffs());
+        field(json, "first_move_cutoff_ratio", String.format(Locale.ROOT, "%.4f", stats.getCutoffs() == 0 ? 0.0 : (double) stats.getFirstMoveCutoffs() / stats.getCutoffs()));
+        field(json, "pvs_re_searches", stats.getPvsReSearches());
+        field(json, "aspiration_re_searches", stats.getAspirationReSearches());
+        if(tt != null){
+            field(json, "tt_probes", tt.getProbes());
+            field(json, "tt_hits", tt.getHits());
+        }
+        field(json, "allocated_bytes", allocated);
+        json.append("  \"iterations\": ").append(iterations(stats.getIterations())).append("\n");
+        json.append("}\n");
+
+        try(FileWriter out = new FileWriter(path)){
+            out.write(json.toString());
+        }
+    }
+
+    // Geometric mean of the ratio of the nodes at one ply to the nodes at the ply above, 0 if fewer than two plies
+    private static double branching_factor(long[] nodesPerPly){
+        int last = nodesPerPly.length - 1;
+        if(last < 1 || nodesPerPly[0] == 0){
+            return 0.0;
+        }
+        return Math.pow((double) nodesPerPly[last] / nodesPerPly[0], 1.0 / last);
+    }
+
+    // Returns the bytes allocated so far by all live threads, or 0 if the JVM does not count them
+    private static long allocated_bytes(){
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean)){
+            return 0;
+        }
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if(!counters.isThreadAllocatedMemorySupported() || !counters.isThreadAllocatedMemoryEnabled()){
+            return 0;
+        }
+
+        long total = 0;
+        for(long bytes : counters.getThreadAllocatedBytes(threads.getAllThreadIds())){
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    private static String iterations(List<SearchStats.Iteration> iterations){
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < iterations.size(); i++){
+            SearchStats.Iteration it = iterations.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"depth\": ").append(it.getDepth())
+                .append(", \"time_ms\": ").append(String.format(Locale.ROOT, "%.3f", it.getNanos() / 1e6))
+                .append(", \"nodes\": ").append(it.getNodes())
+                .append(", \"estimate\": ").append(it.getEstimate())
+                .append(", \"completed\": ").append(it.isCompleted())
+                .append(", \"thread\": ").append(quote(it.getThread())).append("}");
+        }
+        return json.append(iterations.isEmpty() ? "]" : "\n  ]").toString();
+    }
+
+    private static void field(StringBuilder json, String name, Object value){
+        json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+    }
+
+    private static String array(long[] values){
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < values.length; i++){
+            json.append(i == 0 ? "" : ", ").append(values[i]);
+        }
+        return json.append("]").toString();
+    }
+
+    // Method for quoting a string, backslashes and quotes are escaped and the strings written here hold no control characters
+    private static String quote(String s){
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,328 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.FlightRecorder;
+
+// Counters describing a search, shared by every engine
+// The counters are LongAdders so the threads of a parallel search can update one instance without contention.
+//   leaves         - positions evaluated by static estimation because the depth limit was reached
+//   terminal wins  - positions evaluated by static estimation because White or Black has already won
+//   interior nodes - positions whose moves were generated and searched
+//   cutoffs        - branches pruned by alpha beta, and how many of them were caused by the first move searched
+//   re-searches    - null window searches of principal variation search that failed high and aspiration windows
+//                    that did not contain the estimate, both are searched again with a wider window
+//   tablebase hits - positions whose value was found in the endgame tablebase instead of being searched
+//   quiescence     - positions below the depth limit reached by the quiescence search, also counted as leaves
+//   selective      - moves searched one ply shallower by late move reductions and searched again at full depth,
+//                    moves skipped by futility pruning and moves searched one ply deeper by king exit extensions
+// After track_plies() the positions and cutoffs are also counted per ply, which costs a second counter update per
+// node and is only turned on when the numbers are reported. Every root search is recorded as an iteration with
+// its depth, time and nodes, and emitted as a SearchIterationEvent for JFR recordings. Loading the event class starts
+// up JFR, which takes longer than a short search, so no event is created unless JFR is already running.
+// Only the last MAX_ITERATIONS iterations are kept, so an instance reused for many searches does not keep growing.
+public class SearchStats {
+    // Deepest ply with its own counters, positions further down are counted at this ply
+    public static final int MAX_PLY = 127;
+    // Number of root searches kept, more than the iterations of any single iterative deepening search
+    public static final int MAX_ITERATIONS = 512;
+
+    private final LongAdder leaves = new LongAdder();
+    private final LongAdder terminalWins = new LongAdder();
+    private final LongAdder interiorNodes = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder firstMoveCutoffs = new LongAdder();
+    private final LongAdder pvsReSearches = new LongAdder();
+    private final LongAdder aspirationReSearches = new LongAdder();
+    private final LongAdder tablebaseHits = new LongAdder();
+    private final LongAdder quiescenceNodes = new LongAdder();
+    private final LongAdder lateMoveReductions = new LongAdder();
+    private final LongAdder lateMoveReSearches = new LongAdder();
+    private final LongAdder futilityPrunes = new LongAdder();
+    private final LongAdder extensions = new LongAdder();
+    private LongAdder[] plyNodes;
+    private LongAdder[] plyCutoffs;
+    private final List<Iteration> iterations = new ArrayList<Iteration>();
+
+    // Method for turning on the counters per ply, called before the search starts
+    public void track_plies(){
+        plyNodes = new LongAdder[MAX_PLY + 1];
+        plyCutoffs = new LongAdder[MAX_PLY + 1];
+        for(int p = 0; p <= MAX_PLY; p++){
+            plyNodes[p] = new LongAdder();
+            plyCutoffs[p] = new LongAdder();
+        }
+    }
+
+    public void leaf(int ply){
+        leaves.increment();
+        count(plyNodes, ply);
+    }
+
+    public void terminal_win(int ply){
+        terminalWins.increment();
+        count(plyNodes, ply);
+    }
+
+    public void interior_node(int ply){
+        interiorNodes.increment();
+        count(plyNodes, ply);
+    }
+
+    public void cutoff(boolean firstMove, int ply){
+        cutoffs.increment();
+        if(firstMove){
+            firstMoveCutoffs.increment();
+        }
+        count(plyCutoffs, ply);
+    }
+
+    // Returns true once track_plies() was called
+    public boolean tracks_plies(){
+        return plyNodes != null;
+    }
+
+    // Method for adding the counters of another instance, used to merge the private counters of parallel workers
+    // Per ply counters are only added if both instances track them, iterations are not merged
+    public void add(SearchStats other){
+        leaves.add(other.leaves.sum());
+        terminalWins.add(other.terminalWins.sum());
+        interiorNodes.add(other.interiorNodes.sum());
+        cutoffs.add(other.cutoffs.sum());
+        firstMoveCutoffs.add(other.firstMoveCutoffs.sum());
+        pvsReSearches.add(other.pvsReSearches.sum());
+        aspirationReSearches.add(other.aspirationReSearches.sum());
+        tablebaseHits.add(other.tablebaseHits.sum());
+        quiescenceNodes.add(other.quiescenceNodes.sum());
+        lateMoveReductions.add(other.lateMoveReductions.sum());
+        lateMoveReSearches.add(other.lateMoveReSearches.sum());
+        futilityPrunes.add(other.futilityPrunes.sum());
+        extensions.add(other.extensions.sum());
+        if(plyNodes != null && other.plyNodes != null){
+            for(int p = 0; p <= MAX_PLY; p++){
+                plyNodes[p].add(other.plyNodes[p].sum());
+                plyCutoffs[p].add(other.plyCutoffs[p].sum());
+            }
+        }
+    }
+
+    private static void count(LongAdder[] perPly, int ply){
+        if(perPly != null){
+            perPly[Math.min(ply, MAX_PLY)].increment();
+        }
+    }
+
+    // Method for starting the record of a root search, finished by end_iteration
+    public Iteration begin_iteration(String engine, int depth){
+        Iteration iteration = new Iteration(engine, depth, getNodes());
+        if(FlightRecorder.isInitialized()){
+            iteration.event = new SearchIterationEvent();
+            iteration.event.begin();
+        }
+        return iteration;
+    }
+
+    // Method for finishing the record of a root search, completed is false if it was stopped before the end
+    public void end_iteration(Iteration iteration, int estimate, boolean completed){
+        iteration.nanos = System.nanoTime() - iteration.startNanos;
+        iteration.nodes = getNodes() - iteration.startNodes;
+        iteration.estimate = estimate;
+        iteration.completed = completed;
+        synchronized(iterations){
+            if(iterations.size() == MAX_ITERATIONS){
+                iterations.remove(0);
+            }
+            iterations.add(iteration);
+        }
+
+        SearchIterationEvent event = iteration.event;
+        if(event == null){
+            return;
+        }
+        event.end();
+        if(event.shouldCommit()){
+            event.engine = iteration.engine;
+            event.depth = iteration.depth;
+            event.nodes = iteration.nodes;
+            event.estimate = estimate;
+            event.completed = completed;
+            event.commit();
+        }
+    }
+
+    public void pvs_re_search(){
+        pvsReSearches.increment();
+    }
+
+    public void aspiration_re_search(){
+        aspirationReSearches.increment();
+    }
+
+    public void tablebase_hit(){
+        tablebaseHits.increment();
+    }
+
+    public void quiescence_node(){
+        quiescenceNodes.increment();
+    }
+
+    public void late_move_reduction(){
+        lateMoveReductions.increment();
+    }
+
+    public void late_move_re_search(){
+        lateMoveReSearches.increment();
+    }
+
+    public void futility_prune(){
+        futilityPrunes.increment();
+    }
+
+    public void extension(){
+        extensions.increment();
+    }
+
+    // Number of positions visited, evaluated by the static estimator or searched
+    public long getNodes(){
+        return leaves.sum() + terminalWins.sum() + interiorNodes.sum();
+    }
+
+    // Number of positions visited at every ply from the root to the deepest ply reached, empty unless tracked
+    public long[] getNodesPerPly(){
+        return per_ply(plyNodes, plyNodes);
+    }
+
+    // Number of cutoffs at every ply, with as many entries as getNodesPerPly
+    public long[] getCutoffsPerPly(){
+        return per_ply(plyCutoffs, plyNodes);
+    }
+
+    private static long[] per_ply(LongAdder[] perPly, LongAdder[] nodes){
+        if(perPly == null){
+            return new long[0];
+        }
+        int plies = MAX_PLY + 1;
+        while(plies > 0 && nodes[plies - 1].sum() == 0){
+            plies--;
+        }
+        long[] counts = new long[plies];
+        for(int p = 0; p < plies; p++){
+            counts[p] = perPly[p].sum();
+        }
+        return counts;
+    }
+
+    // Returns a copy of the last MAX_ITERATIONS root searches recorded in the order they finished
+    public List<Iteration> getIterations(){
+        synchronized(iterations){
+            return new ArrayList<Iteration>(iterations);
+        }
+    }
+
+    // Number of positions passed to the static estimator, printed as "Positions evaluated by static estimation"
+    public long getPositionsEvaluated(){
+        return leaves.sum() + terminalWins.sum();
+    }
+
+    public long getLeaves(){
+        return leaves.sum();
+    }
+
+    public long getTerminalWins(){
+        return terminalWins.sum();
+    }
+
+    public long getInteriorNodes(){
+        return interiorNodes.sum();
+    }
+
+    public long getCutoffs(){
+        return cutoffs.sum();
+    }
+
+    public long getFirstMoveCutoffs(){
+        return firstMoveCutoffs.sum();
+    }
+
+    public long getPvsReSearches(){
+        return pvsReSearches.sum();
+    }
+
+    public long getAspirationReSearches(){
+        return aspirationReSearches.sum();
+    }
+
+    public long getTablebaseHits(){
+        return tablebaseHits.sum();
+    }
+
+    public long getQuiescenceNodes(){
+        return quiescenceNodes.sum();
+    }
+
+    public long getLateMoveReductions(){
+        return lateMoveReductions.sum();
+    }
+
+    public long getLateMoveReSearches(){
+        return lateMoveReSearches.sum();
+    }
+
+    public long getFutilityPrunes(){
+        return futilityPrunes.sum();
+    }
+
+    public long getExtensions(){
+        return extensions.sum();
+    }
+
+    // Method for formatting the share of cutoffs caused by the first move searched
+    public String firstMoveCutoffRate(){
+        long total = getCutoffs();
+        return String.format("%.2f%%", total == 0 ? 0.0 : 100.0 * getFirstMoveCutoffs() / total);
+    }
+
+    // Record of one root search, an iteration of iterative deepening or the only search of a fixed depth engine
+    // The nodes are those counted by the shared counters while it ran, with parallel threads that includes theirs.
+    static class Iteration{
+        final String engine;
+        final int depth;
+        final long startNanos = System.nanoTime();
+        final long startNodes;
+        final String thread = Thread.currentThread().getName();
+        SearchIterationEvent event;
+        long nanos;
+        long nodes;
+        int estimate;
+        boolean completed;
+
+        Iteration(String engine, int depth, long startNodes){
+            this.engine = engine;
+            this.depth = depth;
+            this.startNodes = startNodes;
+        }
+
+        public int getDepth(){
+            return depth;
+        }
+
+        public long getNanos(){
+            return nanos;
+        }
+
+        public long getNodes(){
+            return nodes;
+        }
+
+        public int getEstimate(){
+            return estimate;
+        }
+
+        public boolean isCompleted(){
+            return completed;
+        }
+
+        public String getThread(){
+            return thread;
+        }
+    }
+}
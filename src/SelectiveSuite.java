@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Test position suite for the selective search options of AlphaBeta
+// Every position is searched with White to move by plain alpha beta and by every selective option on its own and
+// all together: late move reductions, futility pruning and king exit extensions. For each option the suite prints
+// the nodes searched, the share of the plain search's nodes saved, and how far the estimates drift from the plain
+// search to the same depth: the mean and largest difference and the number of positions whose best move changed.
+// The positions run from the opening to late positions with a king that leaves the board with its next move, or are
+// read from --boards, one board per line. --quiescence and --pvs are passed on to every search.
+public class SelectiveSuite {
+    private static final String USAGE = "Usage: java SelectiveSuite <depth> [--boards <file>] [--quiescence] [--pvs] [--tt-mb <megabytes>]";
+
+    private static final String[] SUITE = {
+        "WwwwxxxxxxxxbbbB",
+        "xwwwWxxxxxxxbbbB",
+        "xxwwWwxxxxxxbbbB",
+        "wwxWxwxxxbxxbBxb",
+        "xwxwWxwxxbxbBxbx",
+        "wxwxxWxwbxBxbxbx",
+        "xxxwwwxWxBbbxxxx",
+        "wwwxxxxWBxxxxbbb",
+        "xxxwxxxbWbxwxwbB",
+        "wxxxwxbwxWbxBxxb",
+        "xwbbWwxbxxxxxxBx",
+        "wxbxWwbxxxxBwxbx",
+        "xbxxxxxxbwBbWwxx",
+        "xxxxBbbbwxxxwWxx",
+        "xxxwxbwxxbxxBxbW",
+        "xxxxbwxxBxxxxxxW"
+    };
+
+    // Names of the searches compared, the first is the plain search the others are measured against
+    private static final String[] OPTIONS = {"plain", "lmr", "futility", "extensions", "lmr,futility,extensions"};
+
+    public static void main(String[] args) {
+        if(args.length < 1){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the depth
+        String boardsFile = null;
+        boolean quiescence = false;
+        boolean pvs = false;
+        int ttMegabytes = 16;
+        for(int a = 1; a < args.length; a++){
+            if(args[a].equals("--boards") && a + 1 < args.length){
+                boardsFile = args[++a];
+            } else if(args[a].equals("--quiescence")){
+                quiescence = true;
+            } else if(args[a].equals("--pvs")){
+                pvs = true;
+            } else if(args[a].equals("--tt-mb") && a + 1 < args.length){
+                ttMegabytes = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+        int depth = Integer.parseInt(args[0]);
+
+        List<Long> positions = new ArrayList<Long>();
+        try{
+            for(String board : boardsFile != null ? Files.readAllLines(Paths.get(boardsFile)) : List.of(SUITE)){
+                if(!board.isBlank()){
+                    positions.add(Board.from_string(board.trim()));
+                }
+            }
+        } catch(IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
+
+        // Search every position with every option, the plain results are kept to measure the others against
+        AlphaBeta.GameCalculations game = new AlphaBeta.GameCalculations();
+        int[] plainEstimates = new int[positions.size()];
+        long[] plainBoards = new long[positions.size()];
+        long plainNodes = 0;
+
+        System.out.println("Positions: " + positions.size() + ", depth " + depth);
+        for(String option : OPTIONS){
+            long nodes = 0;
+            long deviation = 0;
+            int maxDeviation = 0;
+            int movesChanged = 0;
+            SearchStats stats = new SearchStats();
+
+            for(int p = 0; p < positions.size(); p++){
+                AlphaBeta.SearchContext search = new AlphaBeta.SearchContext();
+                search.tt = ttMegabytes > 0 ? new TranspositionTable(ttMegabytes) : null;
+                search.quiescence = quiescence;
+                search.pvs = pvs;
+                search.lmr = option.contains("lmr");
+                search.futility = option.contains("futility");
+                search.extensions = option.contains("extensions");
+
+                long before = stats.getNodes();
+                AlphaBeta.ABMove move = AlphaBeta.evaluate_moves_first(game, positions.get(p), stats, search, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, -1);
+                nodes += stats.getNodes() - before;
+
+                if(option.equals("plain")){
+                    plainEstimates[p] = move.getEstimate();
+                    plainBoards[p] = move.getPosition();
+                } else {
+                    int difference = Math.abs(move.getEstimate() - plainEstimates[p]);
+                    deviation += difference;
+                    maxDeviation = Math.max(maxDeviation, difference);
+                    if(move.getPosition() != plainBoards[p]){
+                        movesChanged++;
+                    }
+                }
+            }
+
+            if(option.equals("plain")){
+                plainNodes = nodes;
+                System.out.println(String.format("%-24s %10d nodes", option, nodes));
+                continue;
+            }
+            System.out.println(String.format("%-24s %10d nodes (%6.2f%% saved), estimate deviation mean %.2f max %d, best move changed %d",
+                    option, nodes, plainNodes == 0 ? 0.0 : 100.0 * (plainNodes - nodes) / plainNodes,
+                    (double) deviation / positions.size(), maxDeviation, movesChanged));
+            System.out.println(String.format("%-24s reductions %d (%d re-searched), futility pruned %d, extensions %d", "",
+                    stats.getLateMoveReductions(), stats.getLateMoveReSearches(), stats.getFutilityPrunes(), stats.getExtensions()));
+        }
+    }
+}
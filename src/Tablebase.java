@@ -0,0 +1,425 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// Endgame tablebase holding the game theoretic value of every position with at most a given number of pieces
+// A position is any board with one White king, one Black king and pawns on the other cells, with White or Black to
+// move. Every position has a 16 bit entry in the table, from the point of view of the side to move:
+//    d > 0: the side to move wins, its king leaves the board on ply d of best play
+//    d < 0: the side to move loses, the opponent's king leaves the board on ply -d of best play
+//    0    : neither side can force its king off the board, jumped pieces are sent back so the game can go on forever
+// Positions are grouped in blocks by their number of White and Black pawns, ordered by the total number of pieces.
+// Inside a block a position is ranked by the cells of the two kings, the cells of the pawns among the 14 cells left
+// and which of the pawns are White. A move keeps the number of pieces or takes a pawn off the board, so a block only
+// depends on itself and on blocks that come before it.
+// Blocks are solved by retrograde analysis in sweeps: sweep d finds the positions won in d plies, which have a move to
+// a position lost in d - 1 plies, and the positions lost in d plies, whose moves all lead to positions won in at most
+// d - 1 plies. Every sweep is split over the king cells and run on --threads worker threads.
+// The file is a small header followed by the table, searches map it into memory read only and probe it directly.
+public class Tablebase {
+    private static final String USAGE = "Usage: java Tablebase <output_file> <max_pieces> [--threads <count>]\n"
+                                      + "       java Tablebase --probe <tablebase_file> <board> [--black]";
+
+    // Returned by probe and score for positions that are not in the table
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x54424C31;
+    private static final int HEADER = 2 * Integer.BYTES;
+    // Cells left for the pawns once both kings are placed, and the number of ways to place the two kings
+    private static final int PAWN_CELLS = Board.SIZE - 2;
+    private static final int KING_PLACEMENTS = Board.SIZE * (Board.SIZE - 1);
+    // Largest table supported, 8 pieces take about 250 MB
+    private static final int LIMIT = 8;
+    private static final int[][] BINOMIAL = new int[Board.SIZE + 1][Board.SIZE + 1];
+
+    static {
+        for(int n = 0; n <= Board.SIZE; n++){
+            BINOMIAL[n][0] = 1;
+            for(int k = 1; k <= n; k++){
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if(args.length >= 1 && args[0].equals("--probe")){
+            probe_main(args);
+            return;
+        }
+        if(args.length < 2){
+            System.err.println(USAGE);
+            return;
+        }
+
+        // Read the optional settings that follow the number of pieces
+        int maxPieces = Integer.parseInt(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        for(int a = 2; a < args.length; a++){
+            if(args[a].equals("--threads") && a + 1 < args.length){
+                threads = Integer.parseInt(args[++a]);
+            } else {
+                System.err.println(USAGE);
+                return;
+            }
+        }
+        if(maxPieces < 2 || maxPieces > LIMIT){
+            System.err.println("Error: The number of pieces must be between 2 and " + LIMIT);
+            return;
+        }
+
+        Tablebase tablebase = new Tablebase(maxPieces, ByteBuffer.allocate((int) (size(maxPieces) * Short.BYTES)));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try{
+            tablebase.generate(pool);
+        } catch(InterruptedException | ExecutionException e) {
+            System.err.println("Error: Generation failed: " + e);
+            return;
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        try{
+            tablebase.write(args[0]);
+        } catch(IOException e) {
+            System.err.println("Error: Failed to write to file");
+            return;
+        }
+        System.out.println("Positions: " + size(maxPieces));
+        System.out.println(String.format("Time: %.3f s", elapsed / 1e9));
+    }
+
+    // Prints the value of a single board read from the command line
+    private static void probe_main(String[] args){
+        if(args.length < 3 || args.length > 4 || (args.length == 4 && !args[3].equals("--black"))){
+            System.err.println(USAGE);
+            return;
+        }
+
+        boolean white = args.length == 3;
+        int value;
+        try{
+            value = open(args[1]).probe(Board.from_string(args[2]), white);
+        } catch(IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
+
+        String side = white ? "White" : "Black";
+        if(value == NONE){
+            System.out.println("Not in the tablebase");
+        } else if(value > 0){
+            System.out.println(side + " to move wins in " + value + " plies");
+        } else if(value < 0){
+            System.out.println(side + " to move loses in " + -value + " plies");
+        } else {
+            System.out.println("Draw");
+        }
+    }
+
+    private final int maxPieces;
+    private final ByteBuffer values;
+    // Index of the first position of every block, by number of pawns and number of White pawns
+    private final int[][] offsets;
+
+    private Tablebase(int maxPieces, ByteBuffer values){
+        this.maxPieces = maxPieces;
+        this.values = values;
+        this.offsets = new int[maxPieces - 1][];
+
+        int offset = 0;
+        for(int pawns = 0; pawns <= maxPieces - 2; pawns++){
+            offsets[pawns] = new int[pawns + 1];
+            for(int whitePawns = 0; whitePawns <= pawns; whitePawns++){
+                offsets[pawns][whitePawns] = offset;
+                offset += block_size(pawns, whitePawns);
+            }
+        }
+    }
+
+    // Opens a tablebase file and maps its table into memory
+    public static Tablebase open(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while(header.hasRemaining() && channel.read(header) >= 0){
+            }
+            header.flip();
+            if(header.remaining() < HEADER || header.getInt() != MAGIC){
+                throw new IOException("Not a tablebase file: " + path);
+            }
+            int maxPieces = header.getInt();
+            if(maxPieces < 2 || maxPieces > LIMIT || channel.size() != HEADER + size(maxPieces) * Short.BYTES){
+                throw new IOException("Truncated or corrupt tablebase file: " + path);
+            }
+
+            // The mapping stays valid after the channel is closed
+            return new Tablebase(maxPieces, channel.map(FileChannel.MapMode.READ_ONLY, HEADER, size(maxPieces) * Short.BYTES));
+        }
+    }
+
+    public int getMaxPieces(){
+        return maxPieces;
+    }
+
+    // Returns the value of a position for the side to move as described above, or NONE if it is not in the table
+    public int probe(long board, boolean white){
+        int index = index(board, white);
+        return index < 0 ? NONE : values.getShort(index * Short.BYTES);
+    }
+
+    // Returns the score a search gives a position for the side to move, 100 if it is won, -100 if it is lost and 0 if
+    // it is drawn, on the scale of the static estimate. Returns NONE if the position is not in the table.
+    public int score(long board, boolean white){
+        int value = probe(board, white);
+        if(value == NONE || value == 0){
+            return value;
+        }
+        return value > 0 ? 100 : -100;
+    }
+
+    // Returns the index of a position in the table, or -1 if it has too many pieces or not exactly one king per side
+    private int index(long board, boolean white){
+        int whiteKing = Board.mask(board, Board.WHITE_KING);
+        int blackKing = Board.mask(board, Board.BLACK_KING);
+        if(Integer.bitCount(whiteKing) != 1 || Integer.bitCount(blackKing) != 1){
+            return -1;
+        }
+        int whitePawns = Board.mask(board, Board.WHITE_PAWN);
+        int pawns = whitePawns | Board.mask(board, Board.BLACK_PAWN);
+        int count = Integer.bitCount(pawns);
+        if(count + 2 > maxPieces){
+            return -1;
+        }
+
+        // Rank the king cells, then the pawn cells with the king cells left out, then the White pawns among the pawns
+        int w = Integer.numberOfTrailingZeros(whiteKing);
+        int b = Integer.numberOfTrailingZeros(blackKing);
+        int kings = w * (Board.SIZE - 1) + (b > w ? b - 1 : b);
+        int cells = remove_cell(remove_cell(pawns, Math.max(w, b)), Math.min(w, b));
+        int whites = select(whitePawns, pawns);
+        int whiteCount = Integer.bitCount(whitePawns);
+
+        int rank = (kings * BINOMIAL[PAWN_CELLS][count] + colex(cells)) * BINOMIAL[count][whiteCount] + colex(whites);
+        return offsets[count][whiteCount] + 2 * rank + (white ? 0 : 1);
+    }
+
+    // Number of positions in the block of the given number of pawns, for both sides to move
+    private static int block_size(int pawns, int whitePawns){
+        return 2 * KING_PLACEMENTS * BINOMIAL[PAWN_CELLS][pawns] * BINOMIAL[pawns][whitePawns];
+    }
+
+    // Number of positions in a table of at most maxPieces pieces
+    private static long size(int maxPieces){
+        long size = 0;
+        for(int pawns = 0; pawns <= maxPieces - 2; pawns++){
+            for(int whitePawns = 0; whitePawns <= pawns; whitePawns++){
+                size += block_size(pawns, whitePawns);
+            }
+        }
+        return size;
+    }
+
+    // Rank of a set of cells among the sets of the same size, in colexicographic order
+    private static int colex(int cells){
+        int rank = 0;
+        for(int t = 1; cells != 0; cells &= cells - 1, t++){
+            rank += BINOMIAL[Integer.numberOfTrailingZeros(cells)][t];
+        }
+        return rank;
+    }
+
+    // Method for taking a free cell out of a mask, the cells above it move down by one
+    private static int remove_cell(int mask, int cell){
+        int below = (1 << cell) - 1;
+        return (mask & below) | ((mask >>> 1) & ~below);
+    }
+
+    // Method for putting a free cell back into a mask, the inverse of remove_cell
+    private static int insert_cell(int mask, int cell){
+        int below = (1 << cell) - 1;
+        return (mask & below) | ((mask & ~below) << 1);
+    }
+
+    // Returns a mask with bit t set if the t-th lowest cell of set is in subset
+    private static int select(int subset, int set){
+        int selected = 0;
+        for(int t = 0; set != 0; set &= set - 1, t++){
+            if((subset & set & -set) != 0){
+                selected |= 1 << t;
+            }
+        }
+        return selected;
+    }
+
+    // Returns the t-th lowest cells of set for every bit t of selected, the inverse of select
+    private static int deposit(int selected, int set){
+        int cells = 0;
+        for(; set != 0; set &= set - 1, selected >>>= 1){
+            if((selected & 1) != 0){
+                cells |= set & -set;
+            }
+        }
+        return cells;
+    }
+
+    // Returns the next larger mask with the same number of bits, or -1 after the last mask below 1 << bits
+    private static int next_subset(int mask, int bits){
+        if(mask == 0){
+            return -1;
+        }
+        int low = mask & -mask;
+        int ripple = mask + low;
+        int next = ripple | (((mask ^ ripple) >>> 2) / low);
+        return next < (1 << bits) ? next : -1;
+    }
+
+    // Solves every block in order, the sweeps of a block run until a sweep changes nothing and no earlier block
+    // holds a longer win or loss that a later sweep could still extend
+    private void generate(ExecutorService pool) throws InterruptedException, ExecutionException {
+        int longest = 0;
+
+        for(int pawns = 0; pawns <= maxPieces - 2; pawns++){
+            for(int whitePawns = 0; whitePawns <= pawns; whitePawns++){
+                int blockLongest = 0;
+                for(int d = 1; ; d++){
+                    if(d > Short.MAX_VALUE){
+                        throw new IllegalStateException("Distance does not fit in the table: " + d);
+                    }
+                    long changed = sweep(pool, pawns, whitePawns, d);
+                    if(changed > 0){
+                        blockLongest = d;
+                    } else if(d > longest){
+                        break;
+                    }
+                }
+                longest = Math.max(longest, blockLongest);
+                print_block(pawns, whitePawns, blockLongest);
+            }
+        }
+    }
+
+    // Runs sweep d over a block and returns the number of positions it solved
+    private long sweep(ExecutorService pool, int pawns, int whitePawns, int d) throws InterruptedException, ExecutionException {
+        LongAdder changed = new LongAdder();
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+        for(int kings = 0; kings < KING_PLACEMENTS; kings++){
+            int w = kings / (Board.SIZE - 1);
+            int b = kings % (Board.SIZE - 1);
+            int bCell = b >= w ? b + 1 : b;
+            tasks.add(pool.submit(() -> changed.add(sweep_kings(w, bCell, pawns, whitePawns, d))));
+        }
+        for(Future<?> task : tasks){
+            task.get();
+        }
+
+        return changed.sum();
+    }
+
+    // Sweeps the positions of a block with the kings on cells w and b
+    // The pawns are enumerated in the order of their rank, so the index of a position is counted instead of computed.
+    // Positions solved during the sweep get the distance d, which no other position of the same sweep looks for,
+    // so the threads can write into the table they read from.
+    private int sweep_kings(int w, int b, int pawns, int whitePawns, int d){
+        int changed = 0;
+        long kings = (1L << (Board.WHITE_KING * Board.SIZE + w)) | (1L << (Board.BLACK_KING * Board.SIZE + b));
+        int index = offsets[pawns][whitePawns]
+                + (w * (Board.SIZE - 1) + (b > w ? b - 1 : b)) * (block_size(pawns, whitePawns) / KING_PLACEMENTS);
+
+        for(int cells = (1 << pawns) - 1; cells != -1; cells = next_subset(cells, PAWN_CELLS)){
+            int pawnCells = insert_cell(insert_cell(cells, Math.min(w, b)), Math.max(w, b));
+            for(int whites = (1 << whitePawns) - 1; whites != -1; whites = next_subset(whites, pawns), index += 2){
+                if(values.getShort(index * Short.BYTES) != 0 && values.getShort((index + 1) * Short.BYTES) != 0){
+                    continue;
+                }
+
+                int white = deposit(whites, pawnCells);
+                long board = kings | ((long) white << (Board.WHITE_PAWN * Board.SIZE))
+                        | ((long) (pawnCells & ~white) << (Board.BLACK_PAWN * Board.SIZE));
+                for(int side = 0; side < 2; side++){
+                    if(values.getShort((index + side) * Short.BYTES) == 0){
+                        int value = solve(board, side == 0, d);
+                        if(value != 0){
+                            values.putShort((index + side) * Short.BYTES, (short) value);
+                            changed++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    // Returns d if the position is won in d plies, -d if it is lost in d plies and 0 otherwise
+    private int solve(long board, boolean white, int d){
+        boolean allWon = true;
+        int longest = 0;
+
+        int pieces = white ? Board.white_pieces(board) : Board.black_pieces(board);
+        for(; pieces != 0; pieces &= pieces - 1){
+            long child = Board.generate_move(board, Integer.numberOfTrailingZeros(pieces), white);
+
+            // The king of the side to move left the board
+            if(Board.mask(child, white ? Board.WHITE_KING : Board.BLACK_KING) == 0){
+                return 1;
+            }
+
+            int value = values.getShort(index(child, !white) * Short.BYTES);
+            if(value < 0 && value == 1 - d){
+                return d;
+            }
+            if(value <= 0){
+                allWon = false;
+            } else {
+                longest = Math.max(longest, value);
+            }
+        }
+
+        return allWon && longest == d - 1 ? -d : 0;
+    }
+
+    // Prints the number of won, lost and drawn positions of a block
+    private void print_block(int pawns, int whitePawns, int longest){
+        int offset = offsets[pawns][whitePawns];
+        int size = block_size(pawns, whitePawns);
+        long won = 0;
+        long lost = 0;
+        for(int index = offset; index < offset + size; index++){
+            int value = values.getShort(index * Short.BYTES);
+            if(value > 0){
+                won++;
+            } else if(value < 0){
+                lost++;
+            }
+        }
+
+        System.out.println("Pieces " + (pawns + 2) + " (" + whitePawns + " w, " + (pawns - whitePawns) + " b): " + size + " positions, "
+                + won + " won, " + lost + " lost, " + (size - won - lost) + " drawn, longest " + longest + " plies");
+    }
+
+    // Method for writing the header and the table to a file
+    private void write(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(maxPieces).flip();
+            while(header.hasRemaining()){
+                channel.write(header);
+            }
+            ByteBuffer table = values.duplicate().clear();
+            while(table.hasRemaining()){
+                channel.write(table);
+            }
+        }
+    }
+}
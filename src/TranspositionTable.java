@@ -0,0 +1,162 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed size transposition table keyed by a Zobrist hash of the 16 cells and the side to move
+// Searches hash the canonical form of a position (see canonical), so a position and its colour flip share an entry.
+// The table holds a power of two number of bucket pairs. The first bucket of a pair keeps the entry searched
+// to the greatest depth, the second bucket is always replaced, so deep results survive while recent ones are still cached.
+// The table is shared by parallel searches without locks. Each bucket is two longs, the data word and the hash XOR the
+// data word, so an entry torn by two threads writing at once fails verification and is treated as a miss.
+// The packed data word holds:
+//   bits  0-15: score
+//   bits 16-23: depth
+//   bits 24-25: bound type (EXACT, LOWER or UPPER)
+//   bits 26-30: best move index + 1 (0 if there is no best move)
+//   bits 32-47: generation of the search that stored the entry
+// A table can be reused for many unrelated searches, new_search() starts a new generation and entries of earlier
+// generations are then ignored by probes and replaced first by stores. The table is cleared when the generation
+// counter wraps, so an entry left 65536 searches ago never looks current again.
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int BYTES_PER_PAIR = 2 * (Long.BYTES + Long.BYTES);
+    private static final long[][] PIECE_KEYS = new long[4][Board.SIZE];
+    private static final long WHITE_TO_MOVE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DEL);
+        for(int kind = 0; kind < 4; kind++){
+            for(int i = 0; i < Board.SIZE; i++){
+                PIECE_KEYS[kind][i] = random.nextLong();
+            }
+        }
+        WHITE_TO_MOVE_KEY = random.nextLong();
+    }
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private volatile long generation;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    // Creates a table using at most the given number of megabytes
+    public TranspositionTable(int megabytes){
+        long pairs = Math.max(1, ((long) megabytes << 20) / BYTES_PER_PAIR);
+        int size = (int) Long.highestOneBit(Math.min(pairs, 1 << 28));
+
+        this.keys = new long[size * 2];
+        this.data = new long[size * 2];
+        this.mask = size - 1;
+    }
+
+    // Method for calculating the Zobrist hash of a position and the side to move
+    public static long hash(long board, boolean whiteToMove){
+        long key = whiteToMove ? WHITE_TO_MOVE_KEY : 0L;
+
+        for(int kind = 0; kind < 4; kind++){
+            for(int cells = Board.mask(board, kind); cells != 0; cells &= cells - 1){
+                key ^= PIECE_KEYS[kind][Integer.numberOfTrailingZeros(cells)];
+            }
+        }
+
+        return key;
+    }
+
+    // Method for choosing the canonical form of a position, the smaller of the board and its colour flip
+    // Flipping mirrors the cells and swaps the colours, so a board with White to move plays exactly like its flip with
+    // Black to move and has the same score for the side to move. Searches hash the canonical board, with the side to
+    // move swapped if it is the flip, so a position and its flip share one entry whichever colour reaches it.
+    public static long canonical(long board){
+        long flipped = Board.flip_position(board);
+        return Long.compareUnsigned(flipped, board) < 0 ? flipped : board;
+    }
+
+    // Method for mapping the index of a moving piece between a board and its flip, -1 (no move) is kept
+    public static int flip_move(int move){
+        return move < 0 ? move : Board.SIZE - 1 - move;
+    }
+
+    // Method for starting a new search whose results must not depend on the entries of earlier searches
+    public void new_search(){
+        long next = (generation + 1) & 0xFFFF;
+        if(next == 0){
+            Arrays.fill(keys, 0L);
+            Arrays.fill(data, 0L);
+        }
+        generation = next;
+    }
+
+    // Returns the packed data stored for a hash, or 0 if the position is not in the table
+    public long probe(long key){
+        int index = ((int) key & mask) << 1;
+        long current = generation;
+        probes.increment();
+
+        for(int b = index; b < index + 2; b++){
+            long entry = data[b];
+            if(entry != 0 && (keys[b] ^ entry) == key && generation(entry) == current){
+                hits.increment();
+                return entry;
+            }
+        }
+
+        return 0;
+    }
+
+    // Stores a search result, using the depth-preferred bucket if the new result is at least as deep
+    public void store(long key, int depth, int score, int bound, int move){
+        int index = ((int) key & mask) << 1;
+        long current = generation;
+        long entry = pack(depth, score, bound, move) | (current << 32);
+        long deepest = data[index];
+
+        if((keys[index] ^ deepest) != key && depth < depth(deepest) && generation(deepest) == current){
+            index++;
+        }
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    private static long pack(int depth, int score, int bound, int move){
+        return (score & 0xFFFFL) | ((long) (depth & 0xFF) << 16) | ((long) bound << 24) | ((long) (move + 1) << 26);
+    }
+
+    // Methods for unpacking a data word returned by probe
+    public static int score(long entry){
+        return (short) entry;
+    }
+
+    public static int depth(long entry){
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    public static int bound(long entry){
+        return (int) (entry >>> 24) & 0x3;
+    }
+
+    public static int move(long entry){
+        return (int) (entry >>> 26 & 0x1F) - 1;
+    }
+
+    private static long generation(long entry){
+        return (entry >>> 32) & 0xFFFF;
+    }
+
+    public long getProbes(){
+        return probes.sum();
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    // Method for formatting the hit rate as a percentage of all probes
+    public String hitRate(){
+        long probed = getProbes();
+        return String.format("%.2f%%", probed == 0 ? 0.0 : 100.0 * getHits() / probed);
+    }
+}